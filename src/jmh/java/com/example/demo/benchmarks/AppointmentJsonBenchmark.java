@@ -0,0 +1,88 @@
+package com.example.demo.benchmarks;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.example.demo.JacksonConfiguration;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Appointment to and from JSON with the mapper the application builds: JacksonConfiguration's
+// "HH:mm dd/MM/yyyy" and "dd/MM/yyyy" formats on top of Spring's defaults. One appointment as a booking
+// request, and a page of 100 as a listing.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppointmentJsonBenchmark {
+
+    private static final TypeReference<List<Appointment>> APPOINTMENTS = new TypeReference<List<Appointment>>(){};
+
+    private ObjectMapper objectMapper;
+    private Appointment appointment;
+    private List<Appointment> page;
+    private byte[] appointmentJson;
+    private byte[] pageJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        new JacksonConfiguration().jackson2ObjectMapperBuilderCustomizer().customize(builder);
+        objectMapper = builder.build();
+
+        Room room = new Room("Dermatology");
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+        page = new ArrayList<>();
+        for (int i = 0; i < 100; i++){
+            Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+            patient.setId(1 + i);
+            Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+            doctor.setId(1 + i % 10);
+            Appointment a = new Appointment(patient, doctor, room, morning.plusMinutes(30L * i), morning.plusMinutes(30L * i + 30));
+            a.setId(1 + i);
+            page.add(a);
+        }
+        appointment = page.get(0);
+
+        appointmentJson = objectMapper.writeValueAsBytes(appointment);
+        pageJson = objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] writeAppointment() throws IOException {
+        return objectMapper.writeValueAsBytes(appointment);
+    }
+
+    @Benchmark
+    public Appointment readAppointment() throws IOException {
+        return objectMapper.readValue(appointmentJson, Appointment.class);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Appointment> readPage() throws IOException {
+        return objectMapper.readValue(pageJson, APPOINTMENTS);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.BookingLocks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The conflict check of createAppointment (booking locks taken, AppointmentIndex.conflicts, locks released)
+// against 1k, 100k and 1M existing appointments. "scan" is the same decision by a pass over every appointment
+// with Appointment.conflictsWith, as a baseline for the index and whatever replaces it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConflictCheckBenchmark {
+
+    private static final int ROOMS = 50;
+    private static final int DOCTORS = 400;
+    private static final int PATIENTS = 20000;
+    private static final int REQUESTS = 1024;
+    private static final LocalDateTime FIRST = LocalDateTime.of(2023, 1, 2, 8, 0);
+
+    @Param({"1000", "100000", "1000000"})
+    public int existing;
+
+    @Param({"index", "scan"})
+    public String check;
+
+    private AppointmentIndex index;
+    private BookingLocks locks;
+    private List<Appointment> appointments;
+    private Appointment[] requests;
+    private int next;
+
+    // Half-hour bookings back to back in every room; requests land at random minutes within the booked period,
+    // some on a busy room, doctor or patient and some not
+    @Setup(Level.Trial)
+    public void setUp(){
+        Room[] rooms = new Room[ROOMS];
+        for (int i = 0; i < ROOMS; i++){
+            rooms[i] = new Room("Room " + i);
+        }
+
+        index = new AppointmentIndex();
+        locks = new BookingLocks(64);
+        appointments = new ArrayList<>();
+        for (int i = 0; i < existing; i++){
+            LocalDateTime startsAt = FIRST.plusMinutes(30L * (i / ROOMS));
+            long doctorId = 1 + i % DOCTORS;
+            long patientId = 1 + i % PATIENTS;
+            index.add(new AppointmentSlot(i + 1, rooms[i % ROOMS].getRoomName(), doctorId, patientId, startsAt, startsAt.plusMinutes(30)));
+            if (check.equals("scan")){
+                appointments.add(new Appointment(patient(patientId), doctor(doctorId), rooms[i % ROOMS], startsAt, startsAt.plusMinutes(30)));
+            }
+        }
+
+        Random random = new Random(42);
+        long minutes = 30L * Math.max(1, existing / ROOMS);
+        requests = new Appointment[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++){
+            LocalDateTime startsAt = FIRST.plusMinutes((long) (random.nextDouble() * minutes));
+            requests[i] = new Appointment(patient(1 + random.nextInt(PATIENTS * 2)), doctor(1 + random.nextInt(DOCTORS * 2)),
+                    rooms[random.nextInt(ROOMS)], startsAt, startsAt.plusMinutes(20));
+        }
+    }
+
+    private static Patient patient(long id){
+        Patient patient = new Patient();
+        patient.setId(id);
+        return patient;
+    }
+
+    private static Doctor doctor(long id){
+        Doctor doctor = new Doctor();
+        doctor.setId(id);
+        return doctor;
+    }
+
+    @Benchmark
+    public boolean conflictCheck(){
+        Appointment request = requests[next++ & (REQUESTS - 1)];
+        try (BookingLocks.Held held = locks.lock(request)){
+            if (check.equals("scan")){
+                return scan(request);
+            }
+            return index.conflicts(request);
+        }
+    }
+
+    private boolean scan(Appointment request){
+        for (Appointment appointment : appointments){
+            if (appointment.conflictsWith(request)){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import com.example.demo.entities.*;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Appointment.overlaps for each way a pair can end up: same room and overlapping, same room and apart, and
+// other room. With -prof gc, gc.alloc.rate.norm is the allocation per call, which should stay at 0 bytes.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlapsBenchmark {
+
+    private Appointment booked;
+    private Appointment overlapping;
+    private Appointment apart;
+    private Appointment otherRoom;
+
+    @Setup
+    public void setUp(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        // Room names built at runtime, so equals compares characters as it does for names read from a request
+        booked = new Appointment(patient, doctor, new Room(new String("Dermatology")), morning, morning.plusHours(1));
+        overlapping = new Appointment(patient, doctor, new Room(new String("Dermatology")), morning.plusMinutes(30), morning.plusMinutes(90));
+        apart = new Appointment(patient, doctor, new Room(new String("Dermatology")), morning.plusHours(2), morning.plusHours(3));
+        otherRoom = new Appointment(patient, doctor, new Room(new String("Cardiology")), morning, morning.plusHours(1));
+    }
+
+    @Benchmark
+    public boolean overlapping(){
+        return booked.overlaps(overlapping);
+    }
+
+    @Benchmark
+    public boolean apart(){
+        return booked.overlaps(apart);
+    }
+
+    @Benchmark
+    public boolean otherRoom(){
+        return booked.overlaps(otherRoom);
+    }
+}
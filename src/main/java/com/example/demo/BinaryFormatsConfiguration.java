@@ -0,0 +1,72 @@
+package com.example.demo;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+// application/cbor and application/x-jackson-smile next to JSON, for reading and writing. Their mappers
+// leave out the text date formats: a LocalDateTime is epoch milliseconds, read as UTC, and a LocalDate is
+// an epoch day, whatever @JsonFormat says.
+@Configuration
+public class BinaryFormatsConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+
+        // Spring MVC registers both with the usual modules once the libraries are present; ours take their
+        // place, after JSON, so clients that accept anything still get JSON
+        converters.removeIf(c -> c instanceof MappingJackson2CborHttpMessageConverter || c instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor().modules(epochDates()).build()));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(Jackson2ObjectMapperBuilder.smile().modules(epochDates()).build()));
+    }
+
+    // Replaces the well-known modules, so the java.time serializers that honour @JsonFormat are not registered
+    public static SimpleModule epochDates() {
+        SimpleModule module = new SimpleModule("EpochDates");
+
+        module.addSerializer(LocalDateTime.class, new JsonSerializer<LocalDateTime>() {
+            @Override
+            public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+                gen.writeNumber(value.toInstant(ZoneOffset.UTC).toEpochMilli());
+            }
+        });
+        module.addDeserializer(LocalDateTime.class, new JsonDeserializer<LocalDateTime>() {
+            @Override
+            public LocalDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+                return LocalDateTime.ofEpochSecond(Math.floorDiv(p.getLongValue(), 1000L),
+                        (int) Math.floorMod(p.getLongValue(), 1000L) * 1_000_000, ZoneOffset.UTC);
+            }
+        });
+
+        module.addSerializer(LocalDate.class, new JsonSerializer<LocalDate>() {
+            @Override
+            public void serialize(LocalDate value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+                gen.writeNumber(value.toEpochDay());
+            }
+        });
+        module.addDeserializer(LocalDate.class, new JsonDeserializer<LocalDate>() {
+            @Override
+            public LocalDate deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+                return LocalDate.ofEpochDay(p.getLongValue());
+            }
+        });
+
+        return module;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.demo;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Read-through caches for doctors, patients and rooms, declared on their repositories. Bounds, expiry and
+// statistics come from spring.cache.caffeine.spec; Caffeine evicts by W-TinyLFU once the size is reached.
+@Configuration
+@EnableCaching
+public class CachingConfiguration {
+}
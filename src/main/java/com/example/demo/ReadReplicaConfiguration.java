@@ -0,0 +1,102 @@
+package com.example.demo;
+
+import java.time.Duration;
+
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Only with replica.datasource.url set: two pools, the primary from spring.datasource and the replica from
+// replica.datasource, behind one routing DataSource. Without it Spring Boot's single pool is used as before.
+// Only handlers marked @ReplicaReads read from the replica; every other request reads the primary.
+@Configuration
+@ConditionalOnProperty("replica.datasource.url")
+public class ReadReplicaConfiguration implements WebMvcConfigurer {
+
+    private static final String SCOPE = ReadReplicaConfiguration.class.getName() + ".scope";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties){
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("replica.datasource.hikari")
+    public HikariDataSource replicaDataSource(@Value("${replica.datasource.url}") String url,
+            @Value("${replica.datasource.username:${spring.datasource.username:}}") String username,
+            @Value("${replica.datasource.password:${spring.datasource.password:}}") String password){
+        return DataSourceBuilder.create().type(HikariDataSource.class).url(url).username(username).password(password).build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") DataSource replica,
+            @Value("${replica.datasource.retry-after:30s}") Duration retryAfter){
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica, retryAfter));
+    }
+
+    // Boot's JPA transaction manager, except that transactions of @ReplicaReads handlers don't store what they
+    // read in the second-level or query cache: it may be behind the primary
+    @Bean
+    public PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers){
+        JpaTransactionManager transactionManager = new JpaTransactionManager(){
+            @Override
+            protected EntityManager createEntityManagerForTransaction(){
+                EntityManager entityManager = super.createEntityManagerForTransaction();
+                if (ReplicaRoutingDataSource.isReplicaReads()){
+                    entityManager.setProperty("javax.persistence.cache.storeMode", CacheStoreMode.BYPASS);
+                }
+                return entityManager;
+            }
+        };
+        customizers.ifAvailable(c -> c.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry){
+        registry.addInterceptor(new HandlerInterceptor(){
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler){
+                if (handler instanceof HandlerMethod && ((HandlerMethod) handler).hasMethodAnnotation(ReplicaReads.class)){
+                    request.setAttribute(SCOPE, ReplicaRoutingDataSource.replicaReads());
+                }
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex){
+                ReplicaRoutingDataSource.Scope scope = (ReplicaRoutingDataSource.Scope) request.getAttribute(SCOPE);
+                if (scope != null){
+                    request.removeAttribute(SCOPE);
+                    scope.close();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Marks a handler whose read-only transactions may run on the replica: the uncached lists and pages, exports and
+// existence checks. What they read can be a little behind, so with a replica configured their entities stay out
+// of the second-level and query caches and their responses carry no ETag. Cached lookups and booking decisions
+// stay on the primary.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaReads {
+}
@@ -0,0 +1,98 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Connections of read-only transactions opened inside replicaReads() come from the replica, all others from the
+// primary. Plain read-only transactions stay on the primary: the caches, ETags and conflict checks read through
+// them, and none of those may see a replica that lags behind. It has to sit behind a LazyConnectionDataSourceProxy,
+// so the connection is only taken once the transaction is marked read-only. When the replica can't hand out a
+// connection, reads go to the primary until retryAfter has passed.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Boolean> replicaReads = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long retryAfterMillis;
+    private volatile long replicaDownUntil;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, Duration retryAfter){
+        this.primary = primary;
+        this.replica = replica;
+        this.retryAfterMillis = retryAfter.toMillis();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Target.PRIMARY, primary);
+        targets.put(Target.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey(){
+        if (replicaReads.get() != null && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && System.currentTimeMillis() >= replicaDownUntil){
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (determineCurrentLookupKey() == Target.REPLICA){
+            try {
+                return replica.getConnection();
+            } catch (SQLException e){
+                replicaDown();
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (determineCurrentLookupKey() == Target.REPLICA){
+            try {
+                return replica.getConnection(username, password);
+            } catch (SQLException e){
+                replicaDown();
+            }
+        }
+        return primary.getConnection(username, password);
+    }
+
+    // Lets the read-only transactions of this thread use the replica until closed
+    public static Scope replicaReads(){
+        replicaReads.set(Boolean.TRUE);
+        return replicaReads::remove;
+    }
+
+    public static boolean isReplicaReads(){
+        return replicaReads.get() != null;
+    }
+
+    public boolean isReplicaUp(){
+        return System.currentTimeMillis() >= replicaDownUntil;
+    }
+
+    private void replicaDown(){
+        replicaDownUntil = System.currentTimeMillis() + retryAfterMillis;
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
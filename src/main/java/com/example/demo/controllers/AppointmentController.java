@@ -1,21 +1,52 @@
 package com.example.demo.controllers;
 
+import com.example.demo.ReplicaReads;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.dto.AppointmentSummary;
+import com.example.demo.dto.AvailableSlot;
+import com.example.demo.dto.BookingRequest;
+import com.example.demo.dto.BookingResult;
+import com.example.demo.dto.DeletedRows;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.AvailabilityService;
+import com.example.demo.services.BatchBookingService;
+import com.example.demo.services.BulkDeleteService;
+import com.example.demo.services.BookingLocks;
+import com.example.demo.services.ChangeWatermarks;
+import com.example.demo.services.ChangeWatermarks.Table;
+import com.example.demo.services.ConflictDetector;
+import com.example.demo.services.ConflictMetrics;
+import com.example.demo.services.ExportService;
+import com.example.demo.services.RoomOccupancy;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -23,33 +54,195 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api")
 public class AppointmentController {
 
+    private static final Sort BY_START = Sort.by("startsAt", "id");
+
     @Autowired
     AppointmentRepository appointmentRepository;
 
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    @Autowired
+    ConflictDetector conflictDetector;
+
+    @Autowired
+    ConflictMetrics conflictMetrics;
+
+    @Autowired
+    BookingLocks bookingLocks;
+
+    @Autowired
+    BatchBookingService batchBookingService;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    AvailabilityService availabilityService;
+
+    @Autowired
+    ChangeWatermarks changeWatermarks;
+
+    @Autowired
+    BulkDeleteService bulkDeleteService;
+
+    // Appointments embed their patient, doctor and room, so a change to any of them is a change here
+    @Transactional(readOnly = true)
+    @Watermarked({Table.APPOINTMENTS, Table.DOCTORS, Table.PATIENTS, Table.ROOMS})
+    @ReplicaReads
     @GetMapping("/appointments")
-    public ResponseEntity<List<Appointment>> getAllAppointments(){
-        List<Appointment> appointments = new ArrayList<>();
+    public ResponseEntity<?> getAllAppointments(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+            @RequestParam(value = "room", required = false) String room,
+            @RequestParam(value = "doctorId", required = false) Long doctorId,
+            @RequestParam(value = "patientId", required = false) Long patientId,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "expand", defaultValue = "people") String expand,
+            @RequestParam(value = "fields", required = false) String fields){
+        if (from != null && to != null && !from.isBefore(to)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        // people: patient, doctor and room embedded, as always; none: their ids only, read from the appointment rows alone
+        if (!expand.equals("people") && !expand.equals("none")){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        appointmentRepository.findAll().forEach(appointments::add);
+        // A fieldset made of summary fields only is read as a summary, selecting just those columns
+        Set<String> names = Fields.parse(fields);
+        boolean summary = expand.equals("none") || (names != null && AppointmentSummary.FIELDS.containsAll(names));
+        if (!Fields.valid(names, summary ? AppointmentSummary.FIELDS : Fields.APPOINTMENT)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        Set<String> columns = names == null ? AppointmentSummary.FIELDS : names;
+
+        Specification<Appointment> filter = AppointmentSpecifications.filter(from, to, room, doctorId, patientId,
+                from == null ? null : appointmentRepository.findLongest());
+        if (Cursors.requested(after, limit)){
+            if (summary){
+                return Fields.select(getSummaryPage(filter, after, limit, columns), names);
+            }
+            return Fields.select(getAppointmentPage(filter, after, limit), names);
+        }
+
+        // Without filters this is still the full list
+        boolean filtered = from != null || to != null || room != null || doctorId != null || patientId != null;
+        List<?> appointments;
+        if (summary){
+            appointments = appointmentRepository.findSummaries(filter, filtered ? BY_START : Sort.unsorted(), columns);
+        } else if (filtered){
+            appointments = appointmentRepository.findAll(filter, BY_START);
+        } else {
+            appointments = appointmentRepository.findAll();
+        }
 
         if (appointments.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
 
-        return new ResponseEntity<>(appointments, HttpStatus.OK);
+        return Fields.select(new ResponseEntity<>(appointments, HttpStatus.OK), names);
     }
 
+    // Pages in (startsAt, id) order, seeking past the row in the cursor on top of the filters
+    private ResponseEntity<List<Appointment>> getAppointmentPage(Specification<Appointment> filter, String after, Integer limit){
+        Specification<Appointment> spec;
+        try {
+            spec = seek(filter, after);
+        } catch (IllegalArgumentException | DateTimeException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (limit != null && limit <= 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        int size = Cursors.limit(limit);
+        List<Appointment> appointments = appointmentRepository.findPage(spec, BY_START, size + 1);
+        return Cursors.page(appointments, size, a -> Cursors.encode(a.getStartsAt().toString(), String.valueOf(a.getId())));
+    }
+
+    private ResponseEntity<List<AppointmentSummary>> getSummaryPage(Specification<Appointment> filter, String after, Integer limit, Set<String> columns){
+        Specification<Appointment> spec;
+        try {
+            spec = seek(filter, after);
+        } catch (IllegalArgumentException | DateTimeException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (limit != null && limit <= 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        int size = Cursors.limit(limit);
+        List<AppointmentSummary> appointments = appointmentRepository.findSummaryPage(spec, BY_START, size + 1, columns);
+        return Cursors.page(appointments, size, a -> Cursors.encode(a.getStartsAt().toString(), String.valueOf(a.getId())));
+    }
+
+    private static Specification<Appointment> seek(Specification<Appointment> filter, String after){
+        if (after == null){
+            return filter;
+        }
+        String[] key = Cursors.decode(after, 2);
+        return filter.and(AppointmentSpecifications.after(LocalDateTime.parse(key[0]), Long.parseLong(key[1])));
+    }
+
+    // Whole table, streamed as it is read: a JSON array, or one appointment per line with format=ndjson
+    @ReplicaReads
+    @GetMapping("/appointments/export")
+    public void exportAppointments(@RequestParam(value = "format", defaultValue = "json") String format,
+                                   HttpServletResponse response) throws IOException {
+        if (!format.equals("json") && !format.equals("ndjson")){
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        boolean ndjson = format.equals("ndjson");
+        response.setContentType(ndjson ? "application/x-ndjson" : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        exportService.exportAppointments(response.getOutputStream(), ndjson);
+    }
+
+    @Transactional(readOnly = true)
+    @Watermarked({Table.APPOINTMENTS, Table.DOCTORS, Table.PATIENTS, Table.ROOMS})
     @GetMapping("/appointments/{id}")
-    public ResponseEntity<Appointment> getAppointmentById(@PathVariable("id") long id){
+    public ResponseEntity<?> getAppointmentById(@PathVariable("id") long id,
+            @RequestParam(value = "fields", required = false) String fields){
+        Set<String> names = Fields.parse(fields);
+        if (!Fields.valid(names, Fields.APPOINTMENT)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
         Optional<Appointment> appointment = appointmentRepository.findById(id);
 
         if (appointment.isPresent()){
-            return new ResponseEntity<>(appointment.get(),HttpStatus.OK);
+            return Fields.select(new ResponseEntity<>(appointment.get(),HttpStatus.OK), names);
         }else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
 
+    // Windows of at least the given minutes in which the doctor, the patient and any of the rooms are all free
+    @Transactional(readOnly = true)
+    @GetMapping("/availability")
+    public ResponseEntity<List<AvailableSlot>> getAvailability(@RequestParam("room") List<String> rooms,
+            @RequestParam(value = "doctorId", required = false) Long doctorId,
+            @RequestParam(value = "patientId", required = false) Long patientId,
+            @RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+            @RequestParam("duration") long duration,
+            @RequestParam(value = "limit", defaultValue = "10") int limit){
+
+        if (rooms.isEmpty() || duration <= 0 || limit <= 0 || !from.isBefore(to)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<AvailableSlot> slots = availabilityService.find(doctorId, patientId, rooms, from, to, Duration.ofMinutes(duration), limit);
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
     @PostMapping("/appointment")
     public ResponseEntity<List<Appointment>> createAppointment(@RequestBody Appointment appointment){
 
@@ -60,40 +253,109 @@ public class AppointmentController {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        // Avoid date conflicts
-        if (appointmentRepository.findAll().stream().anyMatch(appointment::overlaps)){
-            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        // Bookings of the same room, doctor or patient wait here, so the conflict check still holds when saving
+        try (BookingLocks.Held held = bookingLocks.lock(a)){
+
+            // Avoid date conflicts
+            if (conflictMetrics.check(() -> conflictDetector.conflicts(a))){
+                return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+            }
+
+            // Appointment needs to have diffent start and finish
+            if (a.getStartsAt().equals(a.getFinishesAt())) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+
+            appointmentRepository.save(a);
+            appointmentIndex.add(a);
+            roomOccupancy.add(a);
         }
 
-        // Appointment needs to have diffent start and finish
-        if (a.getStartsAt().equals(a.getFinishesAt())) {
+        // The room, and a patient or doctor without an id, are created along with the appointment
+        changeWatermarks.bump(Table.APPOINTMENTS, Table.ROOMS);
+        if (a.getPatient() != null && a.getPatient().getId() == 0){
+            changeWatermarks.bump(Table.PATIENTS);
+        }
+        if (a.getDoctor() != null && a.getDoctor().getId() == 0){
+            changeWatermarks.bump(Table.DOCTORS);
+        }
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    // Books existing people and an existing room by their keys: nothing is selected or cascaded, only the appointment
+    // is inserted. A missing key is answered with 400 before any lock is taken; an unknown patient, doctor or room
+    // fails the insert and is answered with 409.
+    @PostMapping("/appointments")
+    public ResponseEntity<BookingResult> bookAppointment(@RequestBody BookingRequest request){
+        if (request.getPatientId() == null || request.getDoctorId() == null || request.getRoomName() == null){
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        appointmentRepository.save(a);
+        Appointment a = request.toAppointment();
+        if (a.getStartsAt() == null || a.getFinishesAt() == null || !a.getStartsAt().isBefore(a.getFinishesAt())){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        return new ResponseEntity<>(HttpStatus.OK);
+        try (BookingLocks.Held held = bookingLocks.lock(a)){
+            if (conflictMetrics.check(() -> conflictDetector.conflicts(a))){
+                return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+            }
+
+            a.setId(appointmentRepository.saveByReference(a).getId());
+            appointmentIndex.add(a);
+            roomOccupancy.add(a);
+        }
+
+        changeWatermarks.bump(Table.APPOINTMENTS);
+        return new ResponseEntity<>(BookingResult.booked(0, a.getId()), HttpStatus.CREATED);
+    }
+
+    // One result per requested appointment, in request order; overlapping items of the same batch are booked first come first served by start time
+    @PostMapping("/appointments/batch")
+    public ResponseEntity<List<BookingResult>> createAppointments(@RequestBody List<Appointment> appointments){
+        List<BookingResult> results = batchBookingService.book(appointments);
+        if (results.stream().anyMatch(r -> r.getStatus() == BookingResult.Status.BOOKED)){
+            changeWatermarks.bump(Table.values());
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    // Existence only: a count on the key, no entity loaded
+    @Transactional(readOnly = true)
+    @ReplicaReads
+    @RequestMapping(value = "/appointments/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> appointmentExists(@PathVariable("id") long id){
+        return new ResponseEntity<>(appointmentRepository.existsById(id) ? HttpStatus.OK : HttpStatus.NOT_FOUND);
     }
 
+    // Removes the appointment only; its patient, doctor and room stay
     @DeleteMapping("/appointments/{id}")
     public ResponseEntity<HttpStatus> deleteAppointment(@PathVariable("id") long id){
 
-        Optional<Appointment> appointment = appointmentRepository.findById(id);
+        // Not while the timelines are rebuilt, or the new ones could still have it
+        try (BookingLocks.Held held = bookingLocks.shared()){
+            if (appointmentRepository.deleteRowById(id) == 0){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
 
-        if (!appointment.isPresent()){
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            // The index still has where and when it was, which is what the occupancy grid needs
+            AppointmentSlot slot = appointmentIndex.remove(id);
+            if (slot != null){
+                roomOccupancy.remove(slot);
+            }
         }
-
-        appointmentRepository.deleteById(id);
+        changeWatermarks.bump(Table.APPOINTMENTS);
 
         return new ResponseEntity<>(HttpStatus.OK);
         
     }
 
     @DeleteMapping("/appointments")
-    public ResponseEntity<HttpStatus> deleteAllAppointments(){
-        appointmentRepository.deleteAll();
-        return new ResponseEntity<>(HttpStatus.OK);
+    public ResponseEntity<DeletedRows> deleteAllAppointments(){
+        DeletedRows deleted = bulkDeleteService.deleteAllAppointments();
+        changeWatermarks.bump(Table.APPOINTMENTS);
+        return new ResponseEntity<>(deleted, HttpStatus.OK);
     }
 
 }
@@ -0,0 +1,46 @@
+package com.example.demo.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+
+@RestController
+@RequestMapping("/api")
+public class CacheController {
+
+    @Autowired
+    CacheManager cacheManager;
+
+    // Counters since startup for each Caffeine cache; the others have none to show
+    @GetMapping("/caches")
+    public ResponseEntity<Map<String, Map<String, Long>>> getCacheStats(){
+        Map<String, Map<String, Long>> caches = new LinkedHashMap<>();
+        for (String name : cacheManager.getCacheNames()){
+            Cache cache = cacheManager.getCache(name);
+            if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache)){
+                continue;
+            }
+            com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache();
+            CacheStats stats = caffeine.stats();
+
+            Map<String, Long> counters = new LinkedHashMap<>();
+            counters.put("size", caffeine.estimatedSize());
+            counters.put("hits", stats.hitCount());
+            counters.put("misses", stats.missCount());
+            counters.put("evictions", stats.evictionCount());
+            caches.put(name, counters);
+        }
+        return new ResponseEntity<>(caches, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.ChangeWatermarks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.context.request.NativeWebRequest;
+
+// Conditional GET from the change watermarks: the ETag is made of the versions of the tables the
+// response is read from, and a SHA-256 of the query string, which picks filters, pages and fields, and of the
+// Accept header, which picks JSON or a binary encoding. Truncated to 128 bits, two representations never share one.
+final class Conditional {
+
+    private Conditional(){
+    }
+
+    // True when the client's copy is current and a 304 has been set up; ETag and Last-Modified are set either way
+    static boolean notModified(NativeWebRequest request, ChangeWatermarks watermarks, ChangeWatermarks.Table... tables){
+        StringBuilder etag = new StringBuilder("\"");
+        long lastModified = 0;
+        for (ChangeWatermarks.Table table : tables){
+            etag.append(Long.toHexString(watermarks.version(table))).append('-');
+            lastModified = Math.max(lastModified, watermarks.lastModified(table));
+        }
+
+        HttpServletRequest servletRequest = request.getNativeRequest(HttpServletRequest.class);
+        String query = servletRequest == null ? null : servletRequest.getQueryString();
+        etag.append(digest(query + '\n' + request.getHeader("Accept"))).append('"');
+
+        HttpServletResponse servletResponse = request.getNativeResponse(HttpServletResponse.class);
+        if (servletResponse != null){
+            servletResponse.addHeader("Vary", "Accept");
+        }
+
+        return request.checkNotModified(etag.toString(), lastModified);
+    }
+
+    private static String digest(String representation){
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(representation.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 16; i++){
+            hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
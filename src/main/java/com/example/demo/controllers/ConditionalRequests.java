@@ -0,0 +1,48 @@
+package com.example.demo.controllers;
+
+import com.example.demo.ReplicaReads;
+import com.example.demo.services.ChangeWatermarks;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Conditional GETs of @Watermarked handlers, checked ahead of the handler: a 304 is sent from the watermarks
+// alone, without opening the handler's transaction or taking a pooled connection. Otherwise the ETag and
+// Last-Modified set here go out with the handler's response. With a replica configured, @ReplicaReads handlers
+// get neither: their body may be older than the watermarks, and a tag on it would keep a stale copy current.
+@Component
+class ConditionalRequests implements WebMvcConfigurer, HandlerInterceptor {
+
+    @Autowired
+    ChangeWatermarks changeWatermarks;
+
+    @Value("${replica.datasource.url:}")
+    String replicaUrl;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry){
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler){
+        if (!(handler instanceof HandlerMethod)){
+            return true;
+        }
+        HandlerMethod method = (HandlerMethod) handler;
+        Watermarked watermarked = method.getMethodAnnotation(Watermarked.class);
+        if (watermarked == null || (!replicaUrl.isEmpty() && method.hasMethodAnnotation(ReplicaReads.class))){
+            return true;
+        }
+        return !Conditional.notModified(new ServletWebRequest(request, response), changeWatermarks, watermarked.value());
+    }
+}
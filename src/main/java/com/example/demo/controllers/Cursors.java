@@ -0,0 +1,65 @@
+package com.example.demo.controllers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+// Keyset paging for the list endpoints: the cursor is the sort key of the last row sent, encoded so
+// clients treat it as opaque, and the next page is read with a seek predicate on that key.
+final class Cursors {
+
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 1000;
+
+    private static final String SEPARATOR = "\n";
+
+    private Cursors(){
+    }
+
+    static boolean requested(String after, Integer limit){
+        return after != null || limit != null;
+    }
+
+    // Invalid limits are rejected by the caller; too large ones are capped
+    static int limit(Integer limit){
+        return limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+    }
+
+    static String encode(String... key){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.join(SEPARATOR, key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // IllegalArgumentException when the cursor was not produced by encode with as many parts
+    static String[] decode(String cursor, int parts){
+        String[] key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+        if (key.length != parts){
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return key;
+    }
+
+    // Rows were read with limit + 1, so an extra row means there is a next page: it is dropped and
+    // a Link header to the page after the last row sent is added
+    static <T> ResponseEntity<List<T>> page(List<T> rows, int limit, Function<T, String> cursorOf){
+        if (rows.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        if (rows.size() > limit){
+            rows = rows.subList(0, limit);
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", cursorOf.apply(rows.get(limit - 1)))
+                    .replaceQueryParam("limit", limit)
+                    .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return new ResponseEntity<>(rows, headers, HttpStatus.OK);
+    }
+}
@@ -1,21 +1,44 @@
 package com.example.demo.controllers;
 
+import com.example.demo.ReplicaReads;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Doctor;
-
+import com.example.demo.dto.ImportReport;
+import com.example.demo.dto.FreeSlot;
+import com.example.demo.dto.DeletedRows;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.ExportService;
+import com.example.demo.services.ImportService;
+import com.example.demo.services.ChangeWatermarks;
+import com.example.demo.services.ChangeWatermarks.Table;
+import com.example.demo.services.BulkDeleteService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -26,8 +49,37 @@ public class DoctorController {
     @Autowired
     DoctorRepository doctorRepository;
 
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    ImportService importService;
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    @Autowired
+    ChangeWatermarks changeWatermarks;
+
+    @Autowired
+    BulkDeleteService bulkDeleteService;
+
+    @Transactional(readOnly = true)
+    @Watermarked({Table.DOCTORS})
+    @ReplicaReads
     @GetMapping("/doctors")
-    public ResponseEntity<List<Doctor>> getAllDoctors(){
+    public ResponseEntity<?> getAllDoctors(@RequestParam(value = "after", required = false) String after,
+                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                           @RequestParam(value = "fields", required = false) String fields){
+        Set<String> names = Fields.parse(fields);
+        if (!Fields.valid(names, Fields.PERSON)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (Cursors.requested(after, limit)){
+            return Fields.select(getDoctorPage(after, limit), names);
+        }
+
         List<Doctor> doctors = new ArrayList<>();
 
         doctorRepository.findAll().forEach(doctors::add);
@@ -36,42 +88,131 @@ public class DoctorController {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
 
-        return new ResponseEntity<>(doctors, HttpStatus.OK);
+        return Fields.select(new ResponseEntity<>(doctors, HttpStatus.OK), names);
+    }
+
+    // Seeks past the id in the cursor, so every page costs the same
+    private ResponseEntity<List<Doctor>> getDoctorPage(String after, Integer limit){
+        long afterId = 0;
+        try {
+            if (after != null){
+                afterId = Long.parseLong(Cursors.decode(after, 1)[0]);
+            }
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (limit != null && limit <= 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        int size = Cursors.limit(limit);
+        List<Doctor> doctors = doctorRepository.findByIdGreaterThanOrderById(afterId, PageRequest.of(0, size + 1));
+        return Cursors.page(doctors, size, d -> Cursors.encode(String.valueOf(d.getId())));
+    }
+
+    // Whole table, streamed as it is read: a JSON array, or one doctor per line with format=ndjson
+    @ReplicaReads
+    @GetMapping("/doctors/export")
+    public void exportDoctors(@RequestParam(value = "format", defaultValue = "json") String format,
+                              HttpServletResponse response) throws IOException {
+        if (!format.equals("json") && !format.equals("ndjson")){
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        boolean ndjson = format.equals("ndjson");
+        response.setContentType(ndjson ? "application/x-ndjson" : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        exportService.exportDoctors(response.getOutputStream(), ndjson);
     }
 
+    @Transactional(readOnly = true)
+    @Watermarked({Table.DOCTORS})
     @GetMapping("/doctors/{id}")
-    public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id){
+    public ResponseEntity<?> getDoctorById(@PathVariable("id") long id,
+            @RequestParam(value = "fields", required = false) String fields){
+        Set<String> names = Fields.parse(fields);
+        if (!Fields.valid(names, Fields.PERSON)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
         Optional<Doctor> doctor = doctorRepository.findById(id);
         if (! doctor.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        return new ResponseEntity<>(doctor.get(),HttpStatus.OK);
+        return Fields.select(new ResponseEntity<>(doctor.get(), HttpStatus.OK), names);
+    }
+
+    // First free windows of at least the given minutes between from and to, read from this doctor's booked timeline
+    @Transactional(readOnly = true)
+    @GetMapping("/doctors/{id}/free-slots")
+    public ResponseEntity<List<FreeSlot>> getFreeSlots(@PathVariable("id") long id,
+            @RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+            @RequestParam("duration") long duration,
+            @RequestParam(value = "limit", defaultValue = "10") int limit){
+
+        if (duration <= 0 || limit <= 0 || !from.isBefore(to)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (!doctorRepository.findById(id).isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        List<FreeSlot> slots = appointmentIndex.freeDoctorSlots(id, from, to, Duration.ofMinutes(duration), limit);
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
+    // CSV with a firstName,lastName,age,email header, or one JSON object per line; valid rows are inserted
+    // in chunks and the rest reported by row
+    @PostMapping(value = "/doctors/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ImportReport> importDoctors(HttpServletRequest request) throws IOException {
+        boolean csv = request.getContentType().startsWith("text/csv");
+        ImportReport report = importService.importDoctors(request.getInputStream(), csv);
+        if (report.getImported() > 0){
+            changeWatermarks.bump(Table.DOCTORS);
+        }
+        return new ResponseEntity<>(report, HttpStatus.OK);
     }
 
     @PostMapping("/doctor")
     public ResponseEntity<Doctor> createDoctor(@RequestBody Doctor doc){
         Doctor d = new Doctor(doc.getFirstName(), doc.getLastName(), doc.getAge(), doc.getEmail());
         doctorRepository.save(d);
+        changeWatermarks.bump(Table.DOCTORS);
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
+    // Existence only: a count on the key, no entity loaded
+    @Transactional(readOnly = true)
+    @ReplicaReads
+    @RequestMapping(value = "/doctors/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> doctorExists(@PathVariable("id") long id){
+        return new ResponseEntity<>(doctorRepository.existsById(id) ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+    }
+
+    // A doctor who still has appointments is answered with 409
     @DeleteMapping("/doctors/{id}")
     public ResponseEntity<HttpStatus> deleteDoctor(@PathVariable("id") long id){
-        Optional<Doctor> doctor = doctorRepository.findById(id);
-
-        if (! doctor.isPresent()){
+        if (doctorRepository.deleteRowById(id) == 0){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        doctorRepository.deleteById(id);
+        changeWatermarks.bump(Table.DOCTORS);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    // Appointments of the deleted doctors go with them
     @DeleteMapping("/doctors")
-    public ResponseEntity<HttpStatus> deleteAllDoctors(){
-        doctorRepository.deleteAll();
-        return new ResponseEntity<>(HttpStatus.OK);
+    public ResponseEntity<DeletedRows> deleteAllDoctors(){
+        DeletedRows deleted = bulkDeleteService.deleteAllDoctors();
+        changeWatermarks.bump(Table.DOCTORS);
+        if (deleted.getAppointments() > 0){
+            changeWatermarks.bump(Table.APPOINTMENTS);
+        }
+        return new ResponseEntity<>(deleted, HttpStatus.OK);
     }
 
 }
@@ -0,0 +1,90 @@
+package com.example.demo.controllers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// Sparse fieldsets (?fields=a,b): responses keep only the listed top-level properties
+final class Fields {
+
+    static final Set<String> PERSON = names("id", "firstName", "lastName", "age", "email");
+    static final Set<String> ROOM = names("roomName");
+    static final Set<String> APPOINTMENT = names("id", "startsAt", "finishesAt", "patient", "doctor", "room");
+
+    private Fields(){
+    }
+
+    static Set<String> names(String... names){
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(names)));
+    }
+
+    // null when no fieldset was asked for
+    static Set<String> parse(String fields){
+        if (fields == null){
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : fields.split(",")){
+            if (!name.trim().isEmpty()){
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+
+    static boolean valid(Set<String> fields, Set<String> known){
+        return fields == null || (!fields.isEmpty() && known.containsAll(fields));
+    }
+
+    // Keeps status and headers; the body is written by the converter content negotiation picks, which
+    // serializes it with its own mapper and only then drops the properties that were not asked for
+    static ResponseEntity<?> select(ResponseEntity<?> response, Set<String> fields){
+        if (fields == null || !response.hasBody()){
+            return response;
+        }
+        return new ResponseEntity<>(new Selection(response.getBody(), fields), response.getHeaders(), response.getStatusCode());
+    }
+
+    // Goes through the mapper of the generator it is written to, so JSON gets its text dates and CBOR or Smile
+    // their epoch numbers, as they do without a fieldset
+    static class Selection extends JsonSerializable.Base {
+
+        private final Object body;
+        private final Set<String> fields;
+
+        Selection(Object body, Set<String> fields){
+            this.body = body;
+            this.fields = fields;
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            JsonNode tree = ((ObjectMapper) gen.getCodec()).valueToTree(body);
+            if (tree.isArray()){
+                for (JsonNode element : tree){
+                    ((ObjectNode) element).retain(fields);
+                }
+            } else {
+                ((ObjectNode) tree).retain(fields);
+            }
+            gen.writeTree(tree);
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+            serialize(gen, serializers);
+        }
+    }
+}
@@ -1,22 +1,40 @@
 
 package com.example.demo.controllers;
 
+import com.example.demo.ReplicaReads;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Patient;
-
+import com.example.demo.dto.ImportReport;
+import com.example.demo.dto.DeletedRows;
+import com.example.demo.services.ExportService;
+import com.example.demo.services.ImportService;
+import com.example.demo.services.ChangeWatermarks;
+import com.example.demo.services.ChangeWatermarks.Table;
+import com.example.demo.services.BulkDeleteService;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -27,8 +45,34 @@ public class PatientController {
     @Autowired
     PatientRepository patientRepository;
 
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    ImportService importService;
+
+    @Autowired
+    ChangeWatermarks changeWatermarks;
+
+    @Autowired
+    BulkDeleteService bulkDeleteService;
+
+    @Transactional(readOnly = true)
+    @Watermarked({Table.PATIENTS})
+    @ReplicaReads
     @GetMapping("/patients")
-    public ResponseEntity<List<Patient>> getAllPatients(){
+    public ResponseEntity<?> getAllPatients(@RequestParam(value = "after", required = false) String after,
+                                            @RequestParam(value = "limit", required = false) Integer limit,
+                                            @RequestParam(value = "fields", required = false) String fields){
+        Set<String> names = Fields.parse(fields);
+        if (!Fields.valid(names, Fields.PERSON)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (Cursors.requested(after, limit)){
+            return Fields.select(getPatientPage(after, limit), names);
+        }
+
         List<Patient> patients = new ArrayList<>();
 
         patientRepository.findAll().forEach(patients::add);
@@ -37,39 +81,108 @@ public class PatientController {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
 
-        return new ResponseEntity<>(patients, HttpStatus.OK);
+        return Fields.select(new ResponseEntity<>(patients, HttpStatus.OK), names);
+    }
+
+    // Seeks past the id in the cursor, so every page costs the same
+    private ResponseEntity<List<Patient>> getPatientPage(String after, Integer limit){
+        long afterId = 0;
+        try {
+            if (after != null){
+                afterId = Long.parseLong(Cursors.decode(after, 1)[0]);
+            }
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (limit != null && limit <= 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        int size = Cursors.limit(limit);
+        List<Patient> patients = patientRepository.findByIdGreaterThanOrderById(afterId, PageRequest.of(0, size + 1));
+        return Cursors.page(patients, size, p -> Cursors.encode(String.valueOf(p.getId())));
     }
 
+    // Whole table, streamed as it is read: a JSON array, or one patient per line with format=ndjson
+    @ReplicaReads
+    @GetMapping("/patients/export")
+    public void exportPatients(@RequestParam(value = "format", defaultValue = "json") String format,
+                               HttpServletResponse response) throws IOException {
+        if (!format.equals("json") && !format.equals("ndjson")){
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        boolean ndjson = format.equals("ndjson");
+        response.setContentType(ndjson ? "application/x-ndjson" : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        exportService.exportPatients(response.getOutputStream(), ndjson);
+    }
+
+    @Transactional(readOnly = true)
+    @Watermarked({Table.PATIENTS})
     @GetMapping("/patients/{id}")
-    public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id){
+    public ResponseEntity<?> getPatientById(@PathVariable("id") long id,
+            @RequestParam(value = "fields", required = false) String fields){
+        Set<String> names = Fields.parse(fields);
+        if (!Fields.valid(names, Fields.PERSON)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
         Optional<Patient> patient = patientRepository.findById(id);
         if (! patient.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(patient.get(),HttpStatus.OK);
+        return Fields.select(new ResponseEntity<>(patient.get(), HttpStatus.OK), names);
+    }
+
+    // CSV with a firstName,lastName,age,email header, or one JSON object per line; valid rows are inserted
+    // in chunks and the rest reported by row
+    @PostMapping(value = "/patients/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ImportReport> importPatients(HttpServletRequest request) throws IOException {
+        boolean csv = request.getContentType().startsWith("text/csv");
+        ImportReport report = importService.importPatients(request.getInputStream(), csv);
+        if (report.getImported() > 0){
+            changeWatermarks.bump(Table.PATIENTS);
+        }
+        return new ResponseEntity<>(report, HttpStatus.OK);
     }
 
     @PostMapping("/patient")
     public ResponseEntity<Patient> createPatient(@RequestBody Patient pat){
         Patient d = new Patient(pat.getFirstName(), pat.getLastName(), pat.getAge(), pat.getEmail());
         patientRepository.save(d);
+        changeWatermarks.bump(Table.PATIENTS);
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
+    // Existence only: a count on the key, no entity loaded
+    @Transactional(readOnly = true)
+    @ReplicaReads
+    @RequestMapping(value = "/patients/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> patientExists(@PathVariable("id") long id){
+        return new ResponseEntity<>(patientRepository.existsById(id) ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+    }
+
+    // A patient who still has appointments is answered with 409
     @DeleteMapping("/patients/{id}")
     public ResponseEntity<HttpStatus> deletePatient(@PathVariable("id") long id){
-        Optional<Patient> patient = patientRepository.findById(id);
-        if (! patient.isPresent()){
+        if (patientRepository.deleteRowById(id) == 0){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        patientRepository.deleteById(id);
+        changeWatermarks.bump(Table.PATIENTS);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    // Appointments of the deleted patients go with them
     @DeleteMapping("/patients")
-    public ResponseEntity<HttpStatus> deleteAllPatients(){
-        patientRepository.deleteAll();
-        return new ResponseEntity<>(HttpStatus.OK);
+    public ResponseEntity<DeletedRows> deleteAllPatients(){
+        DeletedRows deleted = bulkDeleteService.deleteAllPatients();
+        changeWatermarks.bump(Table.PATIENTS);
+        if (deleted.getAppointments() > 0){
+            changeWatermarks.bump(Table.APPOINTMENTS);
+        }
+        return new ResponseEntity<>(deleted, HttpStatus.OK);
     }
 
 }
@@ -0,0 +1,18 @@
+package com.example.demo.controllers;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+// A write refused by a constraint, such as deleting a doctor who still has appointments or booking one who
+// does not exist, is a conflict with the current state rather than a server error
+@RestControllerAdvice
+class ReferencedRows {
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    ResponseEntity<HttpStatus> conflict(){
+        return new ResponseEntity<>(HttpStatus.CONFLICT);
+    }
+}
@@ -1,22 +1,41 @@
 
 package com.example.demo.controllers;
 
+import com.example.demo.ReplicaReads;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Room;
-
+import com.example.demo.dto.FreeSlot;
+import com.example.demo.dto.RoomDay;
+import com.example.demo.dto.DeletedRows;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.RoomOccupancy;
+import com.example.demo.services.ChangeWatermarks;
+import com.example.demo.services.ChangeWatermarks.Table;
+import com.example.demo.services.BulkDeleteService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -27,8 +46,34 @@ public class RoomController {
     @Autowired
     RoomRepository roomRepository;
 
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    ChangeWatermarks changeWatermarks;
+
+    @Autowired
+    BulkDeleteService bulkDeleteService;
+
+    @Transactional(readOnly = true)
+    @Watermarked({Table.ROOMS})
+    @ReplicaReads
     @GetMapping("/rooms")
-    public ResponseEntity<List<Room>> getAllRooms(){
+    public ResponseEntity<?> getAllRooms(@RequestParam(value = "after", required = false) String after,
+                                         @RequestParam(value = "limit", required = false) Integer limit,
+                                         @RequestParam(value = "fields", required = false) String fields){
+        Set<String> names = Fields.parse(fields);
+        if (!Fields.valid(names, Fields.ROOM)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (Cursors.requested(after, limit)){
+            return Fields.select(getRoomPage(after, limit), names);
+        }
+
         List<Room> rooms = new ArrayList<>();
 
         roomRepository.findAll().forEach(rooms::add);
@@ -37,39 +82,126 @@ public class RoomController {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
 
-        return new ResponseEntity<>(rooms, HttpStatus.OK);
+        return Fields.select(new ResponseEntity<>(rooms, HttpStatus.OK), names);
+    }
+
+    // Seeks past the room name in the cursor, so every page costs the same
+    private ResponseEntity<List<Room>> getRoomPage(String after, Integer limit){
+        String afterName = "";
+        try {
+            if (after != null){
+                afterName = Cursors.decode(after, 1)[0];
+            }
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (limit != null && limit <= 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        int size = Cursors.limit(limit);
+        List<Room> rooms = roomRepository.findByRoomNameGreaterThanOrderByRoomName(afterName, PageRequest.of(0, size + 1));
+        return Cursors.page(rooms, size, r -> Cursors.encode(r.getRoomName()));
     }
 
+    @Transactional(readOnly = true)
+    @Watermarked({Table.ROOMS})
     @GetMapping("/rooms/{roomName}")
-    public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName){
+    public ResponseEntity<?> getRoomByRoomName(@PathVariable("roomName") String roomName,
+            @RequestParam(value = "fields", required = false) String fields){
+        Set<String> names = Fields.parse(fields);
+        if (!Fields.valid(names, Fields.ROOM)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
         Optional<Room> room = roomRepository.findByRoomName(roomName);
         if (!room.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(room.get(), HttpStatus.OK);
+        return Fields.select(new ResponseEntity<>(room.get(), HttpStatus.OK), names);
+    }
+
+    // First free windows of at least the given minutes between from and to, read from this room's booked timeline
+    @Transactional(readOnly = true)
+    @GetMapping("/rooms/{roomName}/free-slots")
+    public ResponseEntity<List<FreeSlot>> getFreeSlots(@PathVariable("roomName") String roomName,
+            @RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+            @RequestParam("duration") long duration,
+            @RequestParam(value = "limit", defaultValue = "10") int limit){
+
+        if (duration <= 0 || limit <= 0 || !from.isBefore(to)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (!roomRepository.findByRoomName(roomName).isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        List<FreeSlot> slots = appointmentIndex.freeRoomSlots(roomName, from, to, Duration.ofMinutes(duration), limit);
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
+    @Transactional(readOnly = true)
+    @GetMapping("/rooms/{roomName}/grid")
+    public ResponseEntity<List<RoomDay>> getOccupancyGrid(@PathVariable("roomName") String roomName,
+            @RequestParam("from") @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate from,
+            @RequestParam(value = "days", defaultValue = "7") int days){
+
+        if (days <= 0 || days > 31){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (!roomRepository.findByRoomName(roomName).isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        List<RoomDay> grid = new ArrayList<>();
+        for (Map.Entry<LocalDate, long[]> day : roomOccupancy.grid(roomName, from, days).entrySet()){
+            StringBuilder cells = new StringBuilder(RoomOccupancy.CELLS_PER_DAY);
+            for (int cell = 0; cell < RoomOccupancy.CELLS_PER_DAY; cell++){
+                cells.append(RoomOccupancy.isBusy(day.getValue(), cell) ? '1' : '0');
+            }
+            grid.add(new RoomDay(day.getKey(), RoomOccupancy.CELL_MINUTES, cells.toString()));
+        }
+        return new ResponseEntity<>(grid, HttpStatus.OK);
     }
 
     @PostMapping("/room")
     public ResponseEntity<Room> createRoom(@RequestBody Room room){
         Room tmp = new Room(room.getRoomName());
         roomRepository.save(tmp);
+        changeWatermarks.bump(Table.ROOMS);
         return new ResponseEntity<>(tmp, HttpStatus.CREATED);
     }
 
+    // Existence only: a count on the key, no entity loaded
+    @Transactional(readOnly = true)
+    @ReplicaReads
+    @RequestMapping(value = "/rooms/{roomName}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> roomExists(@PathVariable("roomName") String roomName){
+        return new ResponseEntity<>(roomRepository.existsByRoomName(roomName) ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+    }
+
+    // A room that still has appointments is answered with 409
     @DeleteMapping("/rooms/{roomName}")
     public ResponseEntity<HttpStatus> deleteRoom(@PathVariable("roomName") String roomName){
-        Optional<Room> room = roomRepository.findByRoomName(roomName);
-        if (! room.isPresent()){
+        if (roomRepository.deleteRowByRoomName(roomName) == 0){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        roomRepository.deleteByRoomName(roomName);
+        changeWatermarks.bump(Table.ROOMS);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    // Appointments of the deleted rooms go with them
     @DeleteMapping("/rooms")
-    public ResponseEntity<HttpStatus> deleteAllRooms(){
-        roomRepository.deleteAll();
-        return new ResponseEntity<>(HttpStatus.OK);
+    public ResponseEntity<DeletedRows> deleteAllRooms(){
+        DeletedRows deleted = bulkDeleteService.deleteAllRooms();
+        changeWatermarks.bump(Table.ROOMS);
+        if (deleted.getAppointments() > 0){
+            changeWatermarks.bump(Table.APPOINTMENTS);
+        }
+        return new ResponseEntity<>(deleted, HttpStatus.OK);
     }
 
 }
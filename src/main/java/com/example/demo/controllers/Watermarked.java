@@ -0,0 +1,17 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.ChangeWatermarks;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// GET handler whose response is read from these tables only, so its ETag comes from their change watermarks
+// and ConditionalRequests answers an unchanged copy before the handler runs
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@interface Watermarked {
+
+    ChangeWatermarks.Table[] value();
+}
@@ -0,0 +1,61 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+import com.example.demo.entities.Appointment;
+
+// Lightweight view of an appointment: just what is needed to place it on the room, doctor and patient timelines
+public class AppointmentSlot {
+
+    private final long id;
+    private final String roomName;
+    private final Long doctorId;
+    private final Long patientId;
+    private final LocalDateTime startsAt;
+    private final LocalDateTime finishesAt;
+
+    public AppointmentSlot(long id, String roomName, Long doctorId, Long patientId, LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.id = id;
+        this.roomName = roomName;
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    public static AppointmentSlot of(Appointment appointment){
+        String roomName = appointment.getRoom() == null ? null : appointment.getRoom().getRoomName();
+        Long doctorId = appointment.getDoctor() == null ? null : idOrNull(appointment.getDoctor().getId());
+        Long patientId = appointment.getPatient() == null ? null : idOrNull(appointment.getPatient().getId());
+        return new AppointmentSlot(appointment.getId(), roomName, doctorId, patientId, appointment.getStartsAt(), appointment.getFinishesAt());
+    }
+
+    // 0 is the id of a person that was never persisted
+    private static Long idOrNull(long id){
+        return id == 0 ? null : id;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+}
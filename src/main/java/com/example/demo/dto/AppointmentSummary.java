@@ -0,0 +1,61 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+// Read-only listing shape of an appointment: the people and room by id, read straight from the appointment row
+public class AppointmentSummary {
+
+    public static final Set<String> FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(
+            Arrays.asList("id", "startsAt", "finishesAt", "roomName", "doctorId", "patientId")));
+
+    private final long id;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime finishesAt;
+
+    private final String roomName;
+    private final Long doctorId;
+    private final Long patientId;
+
+    public AppointmentSummary(long id, LocalDateTime startsAt, LocalDateTime finishesAt, String roomName, Long doctorId, Long patientId){
+        this.id = id;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+        this.roomName = roomName;
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Doctor;
+import com.example.demo.entities.Patient;
+import com.example.demo.entities.Room;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+// A booking of existing people and an existing room, named by their keys only
+public class BookingRequest {
+
+    private Long patientId;
+    private Long doctorId;
+    private String roomName;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime finishesAt;
+
+    public BookingRequest(){
+        super();
+    }
+
+    public BookingRequest(Long patientId, Long doctorId, String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.patientId = patientId;
+        this.doctorId = doctorId;
+        this.roomName = roomName;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    // Unsaved appointment whose patient, doctor and room carry nothing but their keys
+    public Appointment toAppointment(){
+        Patient patient = null;
+        if (patientId != null){
+            patient = new Patient();
+            patient.setId(patientId);
+        }
+        Doctor doctor = null;
+        if (doctorId != null){
+            doctor = new Doctor();
+            doctor.setId(doctorId);
+        }
+        Room room = roomName == null ? null : new Room(roomName);
+        return new Appointment(patient, doctor, room, startsAt, finishesAt);
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+    public void setPatientId(Long patientId){
+        this.patientId = patientId;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+    public void setDoctorId(Long doctorId){
+        this.doctorId = doctorId;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+    public void setRoomName(String roomName){
+        this.roomName = roomName;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+    public void setStartsAt(LocalDateTime startsAt){
+        this.startsAt = startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+    public void setFinishesAt(LocalDateTime finishesAt){
+        this.finishesAt = finishesAt;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.dto;
+
+// Outcome of one appointment of a batch booking, by its position in the request
+public class BookingResult {
+
+    public enum Status { BOOKED, INVALID, CONFLICT }
+
+    private final int index;
+    private final Status status;
+    private final Long id;
+
+    public BookingResult(int index, Status status, Long id){
+        this.index = index;
+        this.status = status;
+        this.id = id;
+    }
+
+    public static BookingResult booked(int index, long id){
+        return new BookingResult(index, Status.BOOKED, id);
+    }
+
+    public static BookingResult invalid(int index){
+        return new BookingResult(index, Status.INVALID, null);
+    }
+
+    public static BookingResult conflict(int index){
+        return new BookingResult(index, Status.CONFLICT, null);
+    }
+
+    public int getIndex(){
+        return this.index;
+    }
+
+    public Status getStatus(){
+        return this.status;
+    }
+
+    public Long getId(){
+        return this.id;
+    }
+}
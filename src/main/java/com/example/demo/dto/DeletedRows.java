@@ -0,0 +1,33 @@
+package com.example.demo.dto;
+
+// Rows removed by a bulk delete, per table; appointments count those removed along with their doctor, patient or room
+public class DeletedRows {
+
+    private final long appointments;
+    private final long doctors;
+    private final long patients;
+    private final long rooms;
+
+    public DeletedRows(long appointments, long doctors, long patients, long rooms){
+        this.appointments = appointments;
+        this.doctors = doctors;
+        this.patients = patients;
+        this.rooms = rooms;
+    }
+
+    public long getAppointments(){
+        return this.appointments;
+    }
+
+    public long getDoctors(){
+        return this.doctors;
+    }
+
+    public long getPatients(){
+        return this.patients;
+    }
+
+    public long getRooms(){
+        return this.rooms;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+// Outcome of a bulk import: how many rows went in, how fast, and why the others did not (the first ones only)
+public class ImportReport {
+
+    private final long imported;
+    private final long rejected;
+    private final long millis;
+    private final List<Rejection> rejections;
+
+    public ImportReport(long imported, long rejected, long millis, List<Rejection> rejections){
+        this.imported = imported;
+        this.rejected = rejected;
+        this.millis = millis;
+        this.rejections = rejections;
+    }
+
+    public long getImported(){
+        return this.imported;
+    }
+
+    public long getRejected(){
+        return this.rejected;
+    }
+
+    public long getMillis(){
+        return this.millis;
+    }
+
+    public long getRowsPerSecond(){
+        return this.millis == 0 ? this.imported * 1000 : this.imported * 1000 / this.millis;
+    }
+
+    public List<Rejection> getRejections(){
+        return this.rejections;
+    }
+
+    // Rows count from 1: lines for NDJSON, records after the header for CSV
+    public static class Rejection {
+
+        private final long row;
+        private final String reason;
+
+        public Rejection(long row, String reason){
+            this.row = row;
+            this.reason = reason;
+        }
+
+        public long getRow(){
+            return this.row;
+        }
+
+        public String getReason(){
+            return this.reason;
+        }
+    }
+}
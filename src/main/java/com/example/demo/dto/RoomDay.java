@@ -0,0 +1,32 @@
+package com.example.demo.dto;
+
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+// One day of a room's occupancy grid: a '1' per busy cell and a '0' per free one, cellMinutes each, from midnight
+public class RoomDay {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd/MM/yyyy")
+    private final LocalDate date;
+    private final int cellMinutes;
+    private final String cells;
+
+    public RoomDay(LocalDate date, int cellMinutes, String cells){
+        this.date = date;
+        this.cellMinutes = cellMinutes;
+        this.cells = cells;
+    }
+
+    public LocalDate getDate(){
+        return this.date;
+    }
+
+    public int getCellMinutes(){
+        return this.cellMinutes;
+    }
+
+    public String getCells(){
+        return this.cells;
+    }
+}
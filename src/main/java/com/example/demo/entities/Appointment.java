@@ -1,5 +1,6 @@
 package com.example.demo.entities;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -8,32 +9,65 @@ import javax.persistence.Id;
 import javax.persistence.*;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 @Entity
+@NamedEntityGraph(name = Appointment.WITH_PEOPLE, attributeNodes = {
+    @NamedAttributeNode("patient"),
+    @NamedAttributeNode("doctor"),
+    @NamedAttributeNode("room")
+})
+@Table(indexes = {
+    @Index(name = "idx_appointment_room_starts", columnList = "room_id, starts_at, finishes_at"),
+    @Index(name = "idx_appointment_room_finishes", columnList = "room_id, finishes_at"),
+    @Index(name = "idx_appointment_doctor_starts", columnList = "doctor_id, starts_at, finishes_at"),
+    @Index(name = "idx_appointment_doctor_finishes", columnList = "doctor_id, finishes_at"),
+    @Index(name = "idx_appointment_patient_starts", columnList = "patient_id, starts_at, finishes_at"),
+    @Index(name = "idx_appointment_patient_finishes", columnList = "patient_id, finishes_at"),
+    @Index(name = "idx_appointment_starts", columnList = "starts_at, id"),
+    @Index(name = "idx_appointment_length", columnList = "length_seconds")
+})
 public class Appointment {
 
+    // Fetch plan loading patient, doctor and room in the same statement as the appointments
+    public static final String WITH_PEOPLE = "Appointment.withPeople";
+
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="appointment_ids")
+    @GenericGenerator(name="appointment_ids", strategy=PooledSequenceGenerator.NAME,
+            parameters=@Parameter(name=SequenceStyleGenerator.SEQUENCE_PARAM, value="appointment_seq"))
     private long id;
 
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    // Only new people and rooms of the full-entity booking are saved along with it, and references are left alone.
+    // Detaching still reaches them, so the export keeps the persistence context empty.
+    @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.DETACH})
     @JoinColumn(name = "patient_id", referencedColumnName = "id")
     private Patient patient;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.DETACH})
     @JoinColumn(name = "doctor_id", referencedColumnName = "id")
     private Doctor doctor;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.DETACH})
     @JoinColumn(name = "room_id", referencedColumnName = "roomName")
     private Room room;
 
+    @Column(name = "starts_at")
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
     private LocalDateTime startsAt;
 
+    @Column(name = "finishes_at")
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
     private LocalDateTime finishesAt;
 
+    // Seconds from start to finish, so the longest appointment is one index seek away for the time-window
+    // filter. Set on every insert and update; null on rows written by anything else.
+    @Column(name = "length_seconds")
+    private Long lengthSeconds;
+
     public Appointment(){
         super();
     }
@@ -89,6 +123,12 @@ public class Appointment {
         this.room = room;
     }
     
+    @PrePersist
+    @PreUpdate
+    void measure(){
+        this.lengthSeconds = startsAt == null || finishesAt == null ? null : Duration.between(startsAt, finishesAt).getSeconds();
+    }
+
     public boolean overlaps( Appointment appointment){
         /// True when:
         // Case 1: A.starts == B.starts
@@ -96,19 +136,37 @@ public class Appointment {
         // Case 3: A.starts < B.finishes && B.finishes < A.finishes
         // Case 4: B.starts < A.starts && A.finishes < B.finishes
         if (appointment.getRoom().getRoomName().equals(this.getRoom().getRoomName())){ 
-            if (this.getStartsAt().equals(appointment.getStartsAt()) || 
-                    appointment.getFinishesAt().equals(this.getFinishesAt())){
-                return true;
-                    }
-            if (appointment.getFinishesAt().isAfter(this.getStartsAt()) && appointment.getFinishesAt().isBefore(this.getFinishesAt())){
-                return true;
-            }
-            if ( appointment.getStartsAt().isAfter(this.getStartsAt()) && appointment.getStartsAt().isBefore(this.getFinishesAt())){
-                return true;
-            }
+            return overlapsInTime(appointment);
         }
         
         return false;
     }
 
+    // Same time rules as overlaps, for appointments sharing the room, the doctor or the patient.
+    // People without an id yet (id 0) are new and can't be double booked.
+    public boolean conflictsWith( Appointment appointment){
+        boolean sameRoom = this.getRoom() != null && appointment.getRoom() != null
+                && this.getRoom().getRoomName().equals(appointment.getRoom().getRoomName());
+        boolean sameDoctor = this.getDoctor() != null && appointment.getDoctor() != null
+                && this.getDoctor().getId() != 0 && this.getDoctor().getId() == appointment.getDoctor().getId();
+        boolean samePatient = this.getPatient() != null && appointment.getPatient() != null
+                && this.getPatient().getId() != 0 && this.getPatient().getId() == appointment.getPatient().getId();
+
+        return (sameRoom || sameDoctor || samePatient) && overlapsInTime(appointment);
+    }
+
+    private boolean overlapsInTime( Appointment appointment){
+        if (this.getStartsAt().equals(appointment.getStartsAt()) || 
+                appointment.getFinishesAt().equals(this.getFinishesAt())){
+            return true;
+        }
+        if (appointment.getFinishesAt().isAfter(this.getStartsAt()) && appointment.getFinishesAt().isBefore(this.getFinishesAt())){
+            return true;
+        }
+        if ( appointment.getStartsAt().isAfter(this.getStartsAt()) && appointment.getStartsAt().isBefore(this.getFinishesAt())){
+            return true;
+        }
+        return false;
+    }
+
 }
@@ -2,12 +2,22 @@ package com.example.demo.entities;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 @Entity
 @Table(name="doctors")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
 public class Doctor extends Person {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="doctor_ids")
+    @GenericGenerator(name="doctor_ids", strategy=PooledSequenceGenerator.NAME,
+            parameters=@Parameter(name=SequenceStyleGenerator.SEQUENCE_PARAM, value="doctors_seq"))
     private long id;
  
     public Doctor() {
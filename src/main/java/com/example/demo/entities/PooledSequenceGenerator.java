@@ -0,0 +1,35 @@
+package com.example.demo.entities;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+// A sequence per entity (a one-row table where the database has no sequences) handing out blocks of ids.
+// Ids within a block need no round trip, so Hibernate can send the inserts in JDBC batches, which it
+// cannot do with IDENTITY columns. The block size comes from ids.allocation_size (spring.jpa.properties.*).
+// On databases that had rows before, IdSequences moves each sequence past the ids already in use at startup.
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "com.example.demo.entities.PooledSequenceGenerator";
+
+    public static final String ALLOCATION_SIZE = "ids.allocation_size";
+
+    private static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        String allocationSize = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(ALLOCATION_SIZE, StandardConverters.STRING, String.valueOf(DEFAULT_ALLOCATION_SIZE));
+
+        // pooled-lo: the stored value is the first id of the next block, so ids stay dense and start at 1
+        params.putIfAbsent(INCREMENT_PARAM, allocationSize);
+        params.putIfAbsent(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+}
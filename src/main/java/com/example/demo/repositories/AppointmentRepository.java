@@ -1,14 +1,125 @@
 
 package com.example.demo.repositories;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
+import com.example.demo.dto.AppointmentSlot;
 import com.example.demo.entities.Appointment;
 
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface AppointmentRepository extends JpaRepository<Appointment, Long>, JpaSpecificationExecutor<Appointment>, AppointmentRepositoryCustom {
+
+    String SELECT_SLOT = "select new com.example.demo.dto.AppointmentSlot(a.id, a.room.roomName, a.doctor.id, a.patient.id, a.startsAt, a.finishesAt) from Appointment a";
+
+    // Same cases as Appointment.overlaps, written as range predicates the resource/time indexes can seek on
+    String OVERLAPS = "(a.startsAt = :startsAt or a.finishesAt = :finishesAt"
+            + " or (a.startsAt > :startsAt and a.startsAt < :finishesAt)"
+            + " or (a.finishesAt > :startsAt and a.finishesAt < :finishesAt))";
 
-public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+    @EntityGraph(Appointment.WITH_PEOPLE)
     List<Appointment> findAll();
+
+    @Override
+    @EntityGraph(Appointment.WITH_PEOPLE)
+    List<Appointment> findAll(Specification<Appointment> spec, Sort sort);
+
+    @Override
+    @EntityGraph(Appointment.WITH_PEOPLE)
+    Optional<Appointment> findById(Long id);
+
     Appointment save(Appointment appointment);
     void delete(Appointment appointment);
+
+    // One statement, nothing loaded, nothing cascaded; 0 when there was no such appointment
+    @Transactional
+    @Modifying
+    @Query("delete from Appointment a where a.id = :id")
+    int deleteRowById(@Param("id") long id);
+
+    @Query(SELECT_SLOT)
+    List<AppointmentSlot> findAllSlots();
+
+    // Rows are read from the database as the stream is consumed; needs a surrounding transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select a from Appointment a left join fetch a.patient left join fetch a.doctor left join fetch a.room order by a.id")
+    Stream<Appointment> streamAll();
+
+    // How far a time window has to look back before its start: the longest appointment there is, read from the
+    // database so every instance and writer agrees on it. Null, meaning no bound, while a row with both times
+    // doesn't have its length yet.
+    default Duration findLongest(){
+        if (existsUnmeasured()){
+            return null;
+        }
+        Long seconds = findLongestSeconds();
+        return Duration.ofSeconds(seconds == null ? 0 : seconds);
+    }
+
+    @Query("select max(a.lengthSeconds) from Appointment a")
+    Long findLongestSeconds();
+
+    @Query("select case when count(a) > 0 then true else false end from Appointment a"
+            + " where a.lengthSeconds is null and a.startsAt is not null and a.finishesAt is not null")
+    boolean existsUnmeasured();
+
+    @Query(SELECT_SLOT + " where a.room.roomName = :roomName and " + OVERLAPS)
+    List<AppointmentSlot> findOverlapping(@Param("roomName") String roomName,
+                                          @Param("startsAt") LocalDateTime startsAt,
+                                          @Param("finishesAt") LocalDateTime finishesAt);
+
+    // Room, doctor and patient checks as six range seeks, one per (resource, starts_at) and (resource, finishes_at)
+    // index: together the same cases as OVERLAPS, without an OR across resources that would make the database scan.
+    // Every row a seek reads is a candidate, so scanned is what the six seeks read and conflicting the distinct
+    // appointments among them; a null id never matches.
+    String STARTING_INSIDE = " and (a.starts_at = :startsAt or (a.starts_at > :startsAt and a.starts_at < :finishesAt))";
+    String FINISHING_INSIDE = " and (a.finishes_at = :finishesAt or (a.finishes_at > :startsAt and a.finishes_at < :finishesAt))";
+    String CONFLICTING = "select count(distinct candidates.id) as conflicting, count(*) as scanned from ("
+            + "select a.id from appointment a where a.room_id = :roomName" + STARTING_INSIDE
+            + " union all select a.id from appointment a where a.room_id = :roomName" + FINISHING_INSIDE
+            + " union all select a.id from appointment a where a.doctor_id = :doctorId" + STARTING_INSIDE
+            + " union all select a.id from appointment a where a.doctor_id = :doctorId" + FINISHING_INSIDE
+            + " union all select a.id from appointment a where a.patient_id = :patientId" + STARTING_INSIDE
+            + " union all select a.id from appointment a where a.patient_id = :patientId" + FINISHING_INSIDE
+            + ") candidates";
+
+    @Query(value = CONFLICTING, nativeQuery = true)
+    ConflictScan scanConflicting(@Param("roomName") String roomName,
+                                 @Param("doctorId") Long doctorId,
+                                 @Param("patientId") Long patientId,
+                                 @Param("startsAt") LocalDateTime startsAt,
+                                 @Param("finishesAt") LocalDateTime finishesAt);
+
+    interface ConflictScan {
+        long getConflicting();
+        long getScanned();
+    }
+
+    // Every booking of the given rooms, doctors or patients that starts or finishes inside [from, to]:
+    // a superset of what can conflict with appointments booked within that window
+    @Query(SELECT_SLOT + " where (a.room.roomName in :roomNames or a.doctor.id in :doctorIds or a.patient.id in :patientIds)"
+            + " and (a.startsAt between :from and :to or a.finishesAt between :from and :to)")
+    List<AppointmentSlot> findTouching(@Param("roomNames") Collection<String> roomNames,
+                                       @Param("doctorIds") Collection<Long> doctorIds,
+                                       @Param("patientIds") Collection<Long> patientIds,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to);
 }
@@ -0,0 +1,29 @@
+package com.example.demo.repositories;
+
+import java.util.List;
+import java.util.Set;
+
+import com.example.demo.dto.AppointmentSummary;
+import com.example.demo.entities.Appointment;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface AppointmentRepositoryCustom {
+
+    // First rows only, without the count query a Page would run
+    List<Appointment> findPage(Specification<Appointment> spec, Sort sort, int limit);
+
+    List<AppointmentSummary> findSummaries(Specification<Appointment> spec, Sort sort);
+
+    List<AppointmentSummary> findSummaryPage(Specification<Appointment> spec, Sort sort, int limit);
+
+    // Only the given summary fields are read (id and startsAt always are); the others are left null
+    List<AppointmentSummary> findSummaries(Specification<Appointment> spec, Sort sort, Set<String> fields);
+
+    List<AppointmentSummary> findSummaryPage(Specification<Appointment> spec, Sort sort, int limit, Set<String> fields);
+
+    // Saves a new appointment whose patient, doctor and room only carry their keys. They are taken as references,
+    // never selected, so this is a single INSERT; an unknown key fails it on the foreign key.
+    Appointment saveByReference(Appointment appointment);
+}
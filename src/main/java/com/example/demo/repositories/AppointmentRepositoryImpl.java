@@ -0,0 +1,132 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.example.demo.dto.AppointmentSummary;
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Doctor;
+import com.example.demo.entities.Patient;
+import com.example.demo.entities.Room;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+public class AppointmentRepositoryImpl implements AppointmentRepositoryCustom {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public Appointment saveByReference(Appointment appointment){
+        Patient patient = appointment.getPatient() == null ? null
+                : entityManager.getReference(Patient.class, appointment.getPatient().getId());
+        Doctor doctor = appointment.getDoctor() == null ? null
+                : entityManager.getReference(Doctor.class, appointment.getDoctor().getId());
+        Room room = appointment.getRoom() == null ? null
+                : entityManager.getReference(Room.class, appointment.getRoom().getRoomName());
+
+        Appointment entity = new Appointment(patient, doctor, room, appointment.getStartsAt(), appointment.getFinishesAt());
+        entityManager.persist(entity);
+        entityManager.flush();
+        return entity;
+    }
+
+    @Override
+    public List<Appointment> findPage(Specification<Appointment> spec, Sort sort, int limit){
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Appointment> query = cb.createQuery(Appointment.class);
+        Root<Appointment> root = query.from(Appointment.class);
+        query.select(root);
+
+        return entityManager.createQuery(where(query, root, cb, spec, sort))
+                .setHint("javax.persistence.fetchgraph", entityManager.getEntityGraph(Appointment.WITH_PEOPLE))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<AppointmentSummary> findSummaries(Specification<Appointment> spec, Sort sort){
+        return findSummaries(spec, sort, AppointmentSummary.FIELDS);
+    }
+
+    @Override
+    public List<AppointmentSummary> findSummaryPage(Specification<Appointment> spec, Sort sort, int limit){
+        return findSummaryPage(spec, sort, limit, AppointmentSummary.FIELDS);
+    }
+
+    @Override
+    public List<AppointmentSummary> findSummaries(Specification<Appointment> spec, Sort sort, Set<String> fields){
+        return summaries(summaryQuery(spec, sort, fields).getResultList(), fields);
+    }
+
+    @Override
+    public List<AppointmentSummary> findSummaryPage(Specification<Appointment> spec, Sort sort, int limit, Set<String> fields){
+        return summaries(summaryQuery(spec, sort, fields).setMaxResults(limit).getResultList(), fields);
+    }
+
+    // Room name and people ids are the foreign keys of the appointment row, so no table is joined
+    private TypedQuery<Tuple> summaryQuery(Specification<Appointment> spec, Sort sort, Set<String> fields){
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Appointment> root = query.from(Appointment.class);
+
+        List<Selection<?>> columns = new ArrayList<>();
+        for (String field : AppointmentSummary.FIELDS){
+            if (field.equals("id") || field.equals("startsAt") || fields.contains(field)){
+                columns.add(column(root, field).alias(field));
+            }
+        }
+        query.multiselect(columns);
+
+        return entityManager.createQuery(where(query, root, cb, spec, sort));
+    }
+
+    private static Path<?> column(Root<Appointment> root, String field){
+        switch (field){
+            case "roomName": return root.get("room").get("roomName");
+            case "doctorId": return root.get("doctor").get("id");
+            case "patientId": return root.get("patient").get("id");
+            default: return root.get(field);
+        }
+    }
+
+    private static List<AppointmentSummary> summaries(List<Tuple> rows, Set<String> fields){
+        List<AppointmentSummary> summaries = new ArrayList<>(rows.size());
+        for (Tuple row : rows){
+            summaries.add(new AppointmentSummary(
+                    row.get("id", Long.class),
+                    row.get("startsAt", LocalDateTime.class),
+                    fields.contains("finishesAt") ? row.get("finishesAt", LocalDateTime.class) : null,
+                    fields.contains("roomName") ? row.get("roomName", String.class) : null,
+                    fields.contains("doctorId") ? row.get("doctorId", Long.class) : null,
+                    fields.contains("patientId") ? row.get("patientId", Long.class) : null));
+        }
+        return summaries;
+    }
+
+    private static <T> CriteriaQuery<T> where(CriteriaQuery<T> query, Root<Appointment> root, CriteriaBuilder cb,
+            Specification<Appointment> spec, Sort sort){
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null){
+            query.where(predicate);
+        }
+        return query.orderBy(QueryUtils.toOrders(sort, root, cb));
+    }
+}
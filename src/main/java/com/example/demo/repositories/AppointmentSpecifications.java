@@ -0,0 +1,74 @@
+package com.example.demo.repositories;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import com.example.demo.entities.Appointment;
+
+import org.springframework.data.jpa.domain.Specification;
+
+// Filters for listing appointments. Only the filters that were asked for end up in the where clause,
+// so each query can seek on the matching resource/time index.
+public final class AppointmentSpecifications {
+
+    private AppointmentSpecifications(){
+    }
+
+    // longest is the longest appointment there is (null if unknown): nothing starting that long before from can still
+    // be running at it, so the start column is bounded from both sides and the index seek covers the window only
+    public static Specification<Appointment> filter(LocalDateTime from, LocalDateTime to, String roomName, Long doctorId, Long patientId, Duration longest){
+        Specification<Appointment> spec = Specification.where(null);
+        if (roomName != null){
+            spec = spec.and(inRoom(roomName));
+        }
+        if (doctorId != null){
+            spec = spec.and(withDoctor(doctorId));
+        }
+        if (patientId != null){
+            spec = spec.and(withPatient(patientId));
+        }
+        if (from != null){
+            spec = spec.and(finishingAfter(from));
+            if (longest != null){
+                spec = spec.and(startingFrom(from.minus(longest)));
+            }
+        }
+        if (to != null){
+            spec = spec.and(startingBefore(to));
+        }
+        return spec;
+    }
+
+    // The foreign key columns are compared directly, without joining rooms, doctors or patients
+    public static Specification<Appointment> inRoom(String roomName){
+        return (root, query, cb) -> cb.equal(root.get("room").get("roomName"), roomName);
+    }
+
+    public static Specification<Appointment> withDoctor(long doctorId){
+        return (root, query, cb) -> cb.equal(root.get("doctor").get("id"), doctorId);
+    }
+
+    public static Specification<Appointment> withPatient(long patientId){
+        return (root, query, cb) -> cb.equal(root.get("patient").get("id"), patientId);
+    }
+
+    // Together with startingBefore: every appointment running at some point of [from, to)
+    public static Specification<Appointment> finishingAfter(LocalDateTime from){
+        return (root, query, cb) -> cb.greaterThan(root.<LocalDateTime>get("finishesAt"), from);
+    }
+
+    public static Specification<Appointment> startingFrom(LocalDateTime from){
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.<LocalDateTime>get("startsAt"), from);
+    }
+
+    public static Specification<Appointment> startingBefore(LocalDateTime to){
+        return (root, query, cb) -> cb.lessThan(root.<LocalDateTime>get("startsAt"), to);
+    }
+
+    // Seek predicate for paging in (startsAt, id) order: everything after the given row
+    public static Specification<Appointment> after(LocalDateTime startsAt, long id){
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.<LocalDateTime>get("startsAt"), startsAt),
+                cb.and(cb.equal(root.get("startsAt"), startsAt), cb.greaterThan(root.<Long>get("id"), id)));
+    }
+}
@@ -1,13 +1,58 @@
 package com.example.demo.repositories;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import com.example.demo.entities.Doctor;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     List<Doctor> findAll();
+    List<Doctor> findByIdGreaterThanOrderById(long id, Pageable pageable);
+
+    // Cached by id; a missing doctor is not cached, so one inserted later is found at once
+    @Override
+    @Cacheable(cacheNames = "doctors", unless = "#result == null")
+    Optional<Doctor> findById(Long id);
+
+    @CachePut(cacheNames = "doctors", key = "#result.id")
     Doctor save(Doctor doc);
+
+    @CacheEvict(cacheNames = "doctors", key = "#p0.id")
     void delete(Doctor doc);
+
+    @Override
+    @CacheEvict(cacheNames = "doctors")
+    void deleteById(Long id);
+
+    @Override
+    @CacheEvict(cacheNames = "doctors", allEntries = true)
+    void deleteAll();
+
+    // One statement, nothing loaded; 0 when there was no such row
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = "doctors", key = "#p0")
+    @Query("delete from Doctor d where d.id = :id")
+    int deleteRowById(@Param("id") long id);
+
+    // Rows are read from the database as the stream is consumed; needs a surrounding transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select d from Doctor d order by d.id")
+    Stream<Doctor> streamAll();
 }
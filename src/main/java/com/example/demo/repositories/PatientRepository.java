@@ -1,14 +1,59 @@
 
 package com.example.demo.repositories;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import com.example.demo.entities.Patient;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
     List<Patient> findAll();
+    List<Patient> findByIdGreaterThanOrderById(long id, Pageable pageable);
+
+    // Cached by id; a missing patient is not cached, so one inserted later is found at once
+    @Override
+    @Cacheable(cacheNames = "patients", unless = "#result == null")
+    Optional<Patient> findById(Long id);
+
+    @CachePut(cacheNames = "patients", key = "#result.id")
     Patient save(Patient doc);
+
+    @CacheEvict(cacheNames = "patients", key = "#p0.id")
     void delete(Patient doc);
+
+    @Override
+    @CacheEvict(cacheNames = "patients")
+    void deleteById(Long id);
+
+    @Override
+    @CacheEvict(cacheNames = "patients", allEntries = true)
+    void deleteAll();
+
+    // One statement, nothing loaded; 0 when there was no such row
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = "patients", key = "#p0")
+    @Query("delete from Patient p where p.id = :id")
+    int deleteRowById(@Param("id") long id);
+
+    // Rows are read from the database as the stream is consumed; needs a surrounding transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select p from Patient p order by p.id")
+    Stream<Patient> streamAll();
 }
@@ -6,12 +6,47 @@ import java.util.Optional;
 
 import com.example.demo.entities.Room;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface RoomRepository extends JpaRepository<Room, Long> {
+import javax.persistence.QueryHint;
+
+public interface RoomRepository extends JpaRepository<Room, String> {
     List<Room> findAll();
+    List<Room> findByRoomNameGreaterThanOrderByRoomName(String roomName, Pageable pageable);
+    boolean existsByRoomName(String roomName);
+
+    // Cached by name; a missing room is not cached, so one created later is found at once. Behind that, the
+    // query cache keeps the matching id, dropped by Hibernate on any write to the room table
+    @Cacheable(cacheNames = "rooms", unless = "#result == null")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Room> findByRoomName(String roomName);
+
+    @CachePut(cacheNames = "rooms", key = "#result.roomName")
     Room save(Room room);
+
+    @CacheEvict(cacheNames = "rooms", key = "#p0.roomName")
     void delete(Room room);
+
+    @CacheEvict(cacheNames = "rooms", key = "#p0")
     void deleteByRoomName(String roomName);
+
+    @Override
+    @CacheEvict(cacheNames = "rooms", allEntries = true)
+    void deleteAll();
+
+    // One statement, nothing loaded; 0 when there was no such room
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = "rooms", key = "#p0")
+    @Query("delete from Room r where r.roomName = :roomName")
+    int deleteRowByRoomName(@Param("roomName") String roomName);
 }
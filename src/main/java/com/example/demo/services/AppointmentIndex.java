@@ -0,0 +1,107 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.dto.FreeSlot;
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// In-memory index of booked slots per room, doctor and patient, so a booking can be
+// checked for conflicts without loading the appointments table.
+@Component
+public class AppointmentIndex {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    // Replaced as a whole by load and clear, so readers see either the old timelines or the new ones, never
+    // a half-built set. Bookings must be kept out while that happens (BookingLocks.exclusive), or one made
+    // during the reload would be missing from the new timelines.
+    private volatile Timelines timelines = new Timelines();
+
+    @PostConstruct
+    public void load(){
+        Timelines loaded = new Timelines();
+        appointmentRepository.findAllSlots().forEach(loaded::add);
+        timelines = loaded;
+    }
+
+    public boolean overlaps(Appointment appointment){
+        if (appointment.getStartsAt() == null || appointment.getFinishesAt() == null){
+            return false;
+        }
+        return timelines.roomOverlaps(AppointmentSlot.of(appointment));
+    }
+
+    public boolean conflicts(Appointment appointment){
+        return conflicts(appointment, entries -> {});
+    }
+
+    // Also passes examined the number of timeline entries each lookup read
+    public boolean conflicts(Appointment appointment, IntConsumer examined){
+        if (appointment.getStartsAt() == null || appointment.getFinishesAt() == null){
+            return false;
+        }
+        return timelines.conflicts(AppointmentSlot.of(appointment), examined);
+    }
+
+    public List<FreeSlot> freeRoomSlots(String roomName, LocalDateTime from, LocalDateTime to, Duration duration, int limit){
+        return timelines.freeRoomSlots(roomName, from, to, duration, limit);
+    }
+
+    public List<FreeSlot> freeDoctorSlots(long doctorId, LocalDateTime from, LocalDateTime to, Duration duration, int limit){
+        return timelines.freeDoctorSlots(doctorId, from, to, duration, limit);
+    }
+
+    // Slots of the room, doctor or patient running at some point of [from, to), by start
+    public List<AppointmentSlot> roomSlots(String roomName, LocalDateTime from, LocalDateTime to){
+        return timelines.roomSlots(roomName, from, to);
+    }
+
+    public List<AppointmentSlot> doctorSlots(long doctorId, LocalDateTime from, LocalDateTime to){
+        return timelines.doctorSlots(doctorId, from, to);
+    }
+
+    public List<AppointmentSlot> patientSlots(long patientId, LocalDateTime from, LocalDateTime to){
+        return timelines.patientSlots(patientId, from, to);
+    }
+
+    public Collection<AppointmentSlot> slots(){
+        return timelines.slots();
+    }
+
+    public void add(Appointment appointment){
+        add(AppointmentSlot.of(appointment));
+    }
+
+    public void add(AppointmentSlot slot){
+        timelines.add(slot);
+    }
+
+    public void remove(Appointment appointment){
+        remove(appointment.getId());
+    }
+
+    // The slot that was removed, or null
+    public AppointmentSlot remove(long id){
+        return timelines.remove(id);
+    }
+
+    public void clear(){
+        timelines = new Timelines();
+    }
+
+    public int size(){
+        return timelines.size();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Fills in the length of appointments written without one, before the application takes requests: rows from
+// before the column existed, or inserted behind the application's back. Until then the time-window filter
+// can't bound its look-back (AppointmentRepository.findLongest) and reads the whole history before the window.
+@Component
+public class AppointmentLengths {
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @PostConstruct
+    public void measure(){
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Object[]> rows = entityManager.createQuery("select a.id, a.startsAt, a.finishesAt from Appointment a"
+                    + " where a.lengthSeconds is null and a.startsAt is not null and a.finishesAt is not null", Object[].class)
+                .getResultList();
+            for (Object[] row : rows){
+                entityManager.createQuery("update Appointment a set a.lengthSeconds = :seconds where a.id = :id")
+                    .setParameter("seconds", Duration.between((LocalDateTime) row[1], (LocalDateTime) row[2]).getSeconds())
+                    .setParameter("id", row[0])
+                    .executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.dto.AvailableSlot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// Windows in which a doctor, a patient and one of several rooms are all free. Only the bookings of
+// those resources inside [from, to) are read, each already sorted by start, and merged in linear passes.
+@Service
+public class AvailabilityService {
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    public List<AvailableSlot> find(Long doctorId, Long patientId, Collection<String> roomNames,
+            LocalDateTime from, LocalDateTime to, Duration duration, int limit){
+
+        List<LocalDateTime[]> people = new ArrayList<>();
+        people.add(new LocalDateTime[] { from, to });
+        if (doctorId != null){
+            people = intersect(people, free(appointmentIndex.doctorSlots(doctorId, from, to), from, to));
+        }
+        if (patientId != null){
+            people = intersect(people, free(appointmentIndex.patientSlots(patientId, from, to), from, to));
+        }
+
+        // Windows are sorted by start within each room, so the first 'limit' of every room are enough
+        List<AvailableSlot> available = new ArrayList<>();
+        for (String roomName : roomNames){
+            int found = 0;
+            for (LocalDateTime[] window : intersect(people, free(appointmentIndex.roomSlots(roomName, from, to), from, to))){
+                if (found == limit){
+                    break;
+                }
+                if (!window[0].plus(duration).isAfter(window[1])){
+                    available.add(new AvailableSlot(roomName, window[0], window[1]));
+                    found++;
+                }
+            }
+        }
+
+        available.sort(Comparator.comparing(AvailableSlot::getStartsAt).thenComparing(AvailableSlot::getRoomName));
+        return available.size() > limit ? new ArrayList<>(available.subList(0, limit)) : available;
+    }
+
+    // Complement of the busy slots within [from, to); the slots come sorted by start and may overlap each other
+    private static List<LocalDateTime[]> free(List<AppointmentSlot> busy, LocalDateTime from, LocalDateTime to){
+        List<LocalDateTime[]> free = new ArrayList<>();
+        LocalDateTime cursor = from;
+        for (AppointmentSlot slot : busy){
+            if (slot.getStartsAt().isAfter(cursor)){
+                free.add(new LocalDateTime[] { cursor, slot.getStartsAt() });
+            }
+            if (slot.getFinishesAt().isAfter(cursor)){
+                cursor = slot.getFinishesAt();
+            }
+        }
+        if (cursor.isBefore(to)){
+            free.add(new LocalDateTime[] { cursor, to });
+        }
+        return free;
+    }
+
+    // Both lists sorted and disjoint, so one pass with a pointer on each
+    private static List<LocalDateTime[]> intersect(List<LocalDateTime[]> a, List<LocalDateTime[]> b){
+        List<LocalDateTime[]> both = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()){
+            LocalDateTime start = a.get(i)[0].isAfter(b.get(j)[0]) ? a.get(i)[0] : b.get(j)[0];
+            LocalDateTime end = a.get(i)[1].isBefore(b.get(j)[1]) ? a.get(i)[1] : b.get(j)[1];
+            if (start.isBefore(end)){
+                both.add(new LocalDateTime[] { start, end });
+            }
+            if (a.get(i)[1].isBefore(b.get(j)[1])){
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return both;
+    }
+}
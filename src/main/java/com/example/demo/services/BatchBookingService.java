@@ -0,0 +1,175 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.dto.BookingResult;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Books many appointments at once: one query for the existing bookings around the batch, one pass over
+// the batch in start order, then a single transaction whose inserts go out in JDBC batches.
+@Service
+public class BatchBookingService {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    BookingLocks bookingLocks;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    public List<BookingResult> book(List<Appointment> appointments){
+        BookingResult[] results = new BookingResult[appointments.size()];
+
+        // Same validity rules as a single booking
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < appointments.size(); i++){
+            Appointment a = appointments.get(i);
+            if (a.getStartsAt() == null || a.getFinishesAt() == null || !a.getStartsAt().isBefore(a.getFinishesAt())){
+                results[i] = BookingResult.invalid(i);
+            } else {
+                candidates.add(i);
+            }
+        }
+
+        if (!candidates.isEmpty()){
+            // Stable sort: appointments starting together keep the request order
+            candidates.sort(Comparator.comparing(i -> appointments.get(i).getStartsAt()));
+            List<Appointment> sorted = candidates.stream().map(appointments::get).collect(Collectors.toList());
+
+            try (BookingLocks.Held held = bookingLocks.lockAll(sorted)){
+                List<Appointment> booked = new TransactionTemplate(transactionManager)
+                        .execute(status -> sweep(candidates, appointments, results));
+
+                for (Appointment a : booked){
+                    appointmentIndex.add(a);
+                    roomOccupancy.add(a);
+                }
+                for (int i = 0, b = 0; i < candidates.size(); i++){
+                    int index = candidates.get(i);
+                    if (results[index] == null){
+                        results[index] = BookingResult.booked(index, booked.get(b++).getId());
+                    }
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    // Walks the candidates in start order against a scratch timeline holding the existing bookings
+    // of the same rooms, doctors and patients; every accepted appointment joins the timeline.
+    private List<Appointment> sweep(List<Integer> candidates, List<Appointment> appointments, BookingResult[] results){
+        List<Appointment> sorted = candidates.stream().map(appointments::get).collect(Collectors.toList());
+        Timelines timeline = existingTimeline(sorted);
+
+        Map<String, Room> rooms = new HashMap<>();
+        List<Appointment> booked = new ArrayList<>();
+        for (int index : candidates){
+            Appointment a = appointments.get(index);
+            if (timeline.conflicts(AppointmentSlot.of(a))){
+                results[index] = BookingResult.conflict(index);
+                continue;
+            }
+
+            // Every reference is checked before anything of the item is persisted, so an invalid one leaves no rows
+            Patient patient = find(a.getPatient(), Patient.class, Patient::getId);
+            Doctor doctor = find(a.getDoctor(), Doctor.class, Doctor::getId);
+            if ((a.getPatient() != null && patient == null) || (a.getDoctor() != null && doctor == null)){
+                results[index] = BookingResult.invalid(index);
+                continue;
+            }
+            persistIfNew(patient, Patient::getId);
+            persistIfNew(doctor, Doctor::getId);
+            Room room = a.getRoom() == null ? null : rooms.computeIfAbsent(a.getRoom().getRoomName(), this::findOrCreateRoom);
+
+            Appointment entity = new Appointment(patient, doctor, room, a.getStartsAt(), a.getFinishesAt());
+            entityManager.persist(entity);
+            booked.add(entity);
+
+            // Not yet flushed, so it goes on the timeline under a placeholder id of its own
+            AppointmentSlot slot = AppointmentSlot.of(a);
+            timeline.add(new AppointmentSlot(-1L - index, slot.getRoomName(), slot.getDoctorId(), slot.getPatientId(),
+                    slot.getStartsAt(), slot.getFinishesAt()));
+        }
+
+        entityManager.flush();
+        return booked;
+    }
+
+    private Timelines existingTimeline(List<Appointment> sorted){
+        List<AppointmentSlot> slots = sorted.stream().map(AppointmentSlot::of).collect(Collectors.toList());
+        LocalDateTime from = slots.get(0).getStartsAt();
+        LocalDateTime to = slots.stream().map(AppointmentSlot::getFinishesAt).max(Comparator.naturalOrder()).get();
+
+        Timelines timeline = new Timelines();
+        appointmentRepository.findTouching(
+                orNone(slots.stream().map(AppointmentSlot::getRoomName).filter(Objects::nonNull).collect(Collectors.toSet())),
+                orNone(slots.stream().map(AppointmentSlot::getDoctorId).filter(Objects::nonNull).collect(Collectors.toSet())),
+                orNone(slots.stream().map(AppointmentSlot::getPatientId).filter(Objects::nonNull).collect(Collectors.toSet())),
+                from, to)
+            .forEach(timeline::add);
+        return timeline;
+    }
+
+    // An empty IN () is not valid SQL everywhere; IN (null) matches nothing
+    private static <T> Collection<T> orNone(Set<T> values){
+        return values.isEmpty() ? Collections.singletonList(null) : values;
+    }
+
+    // Known people are looked up by id (null when missing); new ones, without an id, are returned as they are
+    private <T> T find(T person, Class<T> type, Function<T, Long> id){
+        if (person == null || id.apply(person) == 0){
+            return person;
+        }
+        return entityManager.find(type, id.apply(person));
+    }
+
+    // New people are created as a single booking does, once their appointment is accepted
+    private <T> void persistIfNew(T person, Function<T, Long> id){
+        if (person != null && id.apply(person) == 0){
+            entityManager.persist(person);
+        }
+    }
+
+    private Room findOrCreateRoom(String roomName){
+        Room room = entityManager.find(Room.class, roomName);
+        if (room == null){
+            room = new Room(roomName);
+            entityManager.persist(room);
+        }
+        return room;
+    }
+}
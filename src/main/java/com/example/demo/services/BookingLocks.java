@@ -0,0 +1,85 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.entities.Appointment;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Striped locks held from the conflict check until the booking is saved. Only bookings that share
+// a stripe with the same room, doctor or patient wait for each other; everything else runs in parallel.
+// Stripes are always taken in ascending order so two bookings can't deadlock.
+// Every booking also shares one read-write lock, whose write side (exclusive) waits for the bookings
+// in progress and keeps new ones out, for rebuilding the in-memory timelines from the database.
+@Component
+public class BookingLocks {
+
+    private final ReentrantLock[] stripes;
+    private final ReentrantReadWriteLock rebuild = new ReentrantReadWriteLock();
+
+    public BookingLocks(@Value("${appointments.booking.lock-stripes:64}") int stripes){
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++){
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Held lock(Appointment appointment){
+        return lockAll(Collections.singletonList(appointment));
+    }
+
+    public Held lockAll(Collection<Appointment> appointments){
+        // New people (no id yet) can't collide with anyone, so they don't take a stripe
+        int[] indexes = appointments.stream()
+                .map(AppointmentSlot::of)
+                .flatMap(slot -> Stream.of(
+                    slot.getRoomName() == null ? null : "room:" + slot.getRoomName(),
+                    slot.getDoctorId() == null ? null : "doctor:" + slot.getDoctorId(),
+                    slot.getPatientId() == null ? null : "patient:" + slot.getPatientId()))
+                .filter(Objects::nonNull)
+                .mapToInt(this::stripeOf)
+                .sorted()
+                .distinct()
+                .toArray();
+
+        rebuild.readLock().lock();
+        for (int index : indexes){
+            stripes[index].lock();
+        }
+        return () -> {
+            for (int i = indexes.length - 1; i >= 0; i--){
+                stripes[indexes[i]].unlock();
+            }
+            rebuild.readLock().unlock();
+        };
+    }
+
+    // No booking at all, for changes to the timelines that are not about a single room, doctor or patient
+    public Held exclusive(){
+        rebuild.writeLock().lock();
+        return () -> rebuild.writeLock().unlock();
+    }
+
+    // Alongside bookings but never during a rebuild, for changes that take no stripe, such as a delete by id
+    public Held shared(){
+        rebuild.readLock().lock();
+        return () -> rebuild.readLock().unlock();
+    }
+
+    private int stripeOf(String key){
+        int hash = key.hashCode();
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
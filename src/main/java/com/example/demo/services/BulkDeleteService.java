@@ -0,0 +1,118 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.DeletedRows;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Whole-table deletes as set-based statements, never loading the rows. Tables are walked in key order a chunk
+// at a time, each chunk a DELETE ... BETWEEN in its own short transaction. Appointments pointing at a chunk
+// of doctors, patients or rooms are deleted first, so the foreign keys hold at every commit, and the
+// in-memory timelines are rebuilt when any went: from the database, with bookings held off, so one that
+// committed while the chunks were deleted is kept.
+@Service
+public class BulkDeleteService {
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    BookingLocks bookingLocks;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${deletes.chunk-size:1000}")
+    int chunkSize;
+
+    public DeletedRows deleteAllAppointments(){
+        long[] deleted = deleteInChunks("Appointment", "id", Long.class, null);
+        reload();
+        return new DeletedRows(deleted[0], 0, 0, 0);
+    }
+
+    @CacheEvict(cacheNames = "doctors", allEntries = true)
+    public DeletedRows deleteAllDoctors(){
+        long[] deleted = deleteInChunks("Doctor", "id", Long.class, "doctor.id");
+        reloadIfAny(deleted[1]);
+        return new DeletedRows(deleted[1], deleted[0], 0, 0);
+    }
+
+    @CacheEvict(cacheNames = "patients", allEntries = true)
+    public DeletedRows deleteAllPatients(){
+        long[] deleted = deleteInChunks("Patient", "id", Long.class, "patient.id");
+        reloadIfAny(deleted[1]);
+        return new DeletedRows(deleted[1], 0, deleted[0], 0);
+    }
+
+    @CacheEvict(cacheNames = "rooms", allEntries = true)
+    public DeletedRows deleteAllRooms(){
+        long[] deleted = deleteInChunks("Room", "roomName", String.class, "room.roomName");
+        reloadIfAny(deleted[1]);
+        return new DeletedRows(deleted[1], 0, 0, deleted[0]);
+    }
+
+    private void reloadIfAny(long appointments){
+        if (appointments > 0){
+            reload();
+        }
+    }
+
+    private void reload(){
+        try (BookingLocks.Held held = bookingLocks.exclusive()){
+            appointmentIndex.load();
+            roomOccupancy.load();
+        }
+    }
+
+    // Rows and referencing appointments deleted. Each chunk is bounded by the first and last of the next
+    // chunkSize keys, read from the primary key alone, so gaps in the keys do not make chunks bigger.
+    private <K> long[] deleteInChunks(String entity, String key, Class<K> keyType, String reference){
+        long[] deleted = new long[2];
+        K after = null;
+        while (true){
+            K from = after;
+            K last = new TransactionTemplate(transactionManager).execute(status -> {
+                TypedQuery<K> keys = entityManager.createQuery("select e." + key + " from " + entity + " e"
+                        + (from == null ? "" : " where e." + key + " > :after") + " order by e." + key, keyType);
+                if (from != null){
+                    keys.setParameter("after", from);
+                }
+                List<K> chunk = keys.setMaxResults(chunkSize).getResultList();
+                if (chunk.isEmpty()){
+                    return null;
+                }
+
+                K lo = chunk.get(0);
+                K hi = chunk.get(chunk.size() - 1);
+                if (reference != null){
+                    deleted[1] += entityManager.createQuery("delete from Appointment a where a." + reference + " between :lo and :hi")
+                            .setParameter("lo", lo).setParameter("hi", hi).executeUpdate();
+                }
+                deleted[0] += entityManager.createQuery("delete from " + entity + " e where e." + key + " between :lo and :hi")
+                        .setParameter("lo", lo).setParameter("hi", hi).executeUpdate();
+                return hi;
+            });
+            if (last == null){
+                return deleted;
+            }
+            after = last;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.services;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+// A version and a last-modified time per table, moved forward by every create and delete, so
+// conditional GETs can be answered without reading the table. Versions start from the startup
+// time, so a restart never hands out an old version again. Kept per instance, like the appointment index.
+@Component
+public class ChangeWatermarks {
+
+    public enum Table { APPOINTMENTS, DOCTORS, PATIENTS, ROOMS }
+
+    private final Map<Table, Watermark> watermarks = new EnumMap<>(Table.class);
+
+    public ChangeWatermarks(){
+        long now = System.currentTimeMillis();
+        for (Table table : Table.values()){
+            watermarks.put(table, new Watermark(now));
+        }
+    }
+
+    public void bump(Table... tables){
+        for (Table table : tables){
+            watermarks.get(table).bump();
+        }
+    }
+
+    public long version(Table table){
+        return watermarks.get(table).version.get();
+    }
+
+    public long lastModified(Table table){
+        return watermarks.get(table).modified;
+    }
+
+    private static class Watermark {
+
+        private final AtomicLong version;
+        private volatile long modified;
+
+        Watermark(long now){
+            this.version = new AtomicLong(now);
+            this.modified = now;
+        }
+
+        void bump(){
+            version.incrementAndGet();
+            modified = System.currentTimeMillis();
+        }
+    }
+}
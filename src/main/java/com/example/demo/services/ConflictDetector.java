@@ -0,0 +1,10 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.Appointment;
+
+// Decides whether a new appointment collides with an existing booking of the same room, doctor or patient.
+// Selected with the appointments.conflict-detection property ("index" or "query").
+public interface ConflictDetector {
+
+    boolean conflicts(Appointment appointment);
+}
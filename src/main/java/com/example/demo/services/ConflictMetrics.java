@@ -0,0 +1,39 @@
+package com.example.demo.services;
+
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Latency of the conflict check of a booking, and what it read to decide: the rows the six range seeks return
+// with query detection, the neighbouring timeline entries its lookups read with the in-memory index (free slots too)
+@Component
+public class ConflictMetrics {
+
+    private final Timer check;
+    private final Counter rowsScanned;
+
+    public ConflictMetrics(MeterRegistry registry, @Value("${appointments.conflict-detection:index}") String detection){
+        this.check = Timer.builder("appointments.conflict.check")
+                .description("Conflict check of a single booking")
+                .tag("detection", detection)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rowsScanned = Counter.builder("appointments.conflict.rows.scanned")
+                .description("Appointment rows or index entries read by conflict checks")
+                .tag("detection", detection)
+                .register(registry);
+    }
+
+    public boolean check(Supplier<Boolean> conflicts){
+        return check.record(conflicts);
+    }
+
+    public void scanned(int rows){
+        rowsScanned.increment(rows);
+    }
+}
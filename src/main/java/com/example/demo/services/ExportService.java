@@ -0,0 +1,85 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Whole-table exports written row by row as the database returns them. Every entity is detached once
+// written, so the persistence context, and the heap, stay the same size whatever the table size.
+@Service
+public class ExportService {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    public long exportAppointments(OutputStream out, boolean ndjson) throws IOException {
+        try (Stream<?> rows = appointmentRepository.streamAll()){
+            return write(rows, out, ndjson);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportDoctors(OutputStream out, boolean ndjson) throws IOException {
+        try (Stream<?> rows = doctorRepository.streamAll()){
+            return write(rows, out, ndjson);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportPatients(OutputStream out, boolean ndjson) throws IOException {
+        try (Stream<?> rows = patientRepository.streamAll()){
+            return write(rows, out, ndjson);
+        }
+    }
+
+    // A JSON array, or one JSON document per line (NDJSON)
+    private long write(Stream<?> rows, OutputStream out, boolean ndjson) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)){
+            if (!ndjson){
+                generator.writeStartArray();
+            }
+            for (Iterator<?> it = rows.iterator(); it.hasNext(); ){
+                Object row = it.next();
+                generator.writeObject(row);
+                if (ndjson){
+                    generator.writeRaw('\n');
+                }
+                entityManager.detach(row);
+                count++;
+            }
+            if (!ndjson){
+                generator.writeEndArray();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.PooledSequenceGenerator;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Moves every pooled id sequence past the largest id of its table before the application takes requests.
+// Databases that had rows before the sequences existed get new, empty ones starting at 1, and the first
+// insert would reuse an id. Sequences already ahead are left alone, so this is a no-op on every later start.
+@Component
+public class IdSequences {
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @PostConstruct
+    public void seed(){
+        SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+        Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+        SqlStringGenerationContext context = sessionFactory.getSqlStringGenerationContext();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()){
+                IdentifierGenerator generator = persister.getIdentifierGenerator();
+                if (generator instanceof PooledSequenceGenerator){
+                    seed(persister.getEntityName(), persister.getIdentifierPropertyName(),
+                            ((SequenceStyleGenerator) generator).getDatabaseStructure(), context, dialect);
+                }
+            }
+        });
+    }
+
+    // With pooled-lo the stored value is the first id of the next block, so it has to be above the largest id.
+    // A table (MySQL) is moved in one conditional update; a real sequence is read, which only skips a block,
+    // and restarted when it is behind.
+    private void seed(String entity, String idProperty, DatabaseStructure sequence,
+            SqlStringGenerationContext context, Dialect dialect){
+        Number largest = (Number) entityManager.createQuery("select max(e." + idProperty + ") from " + entity + " e").getSingleResult();
+        if (largest == null){
+            return;
+        }
+        long next = largest.longValue() + 1;
+        String name = context.format(sequence.getPhysicalName());
+
+        if (sequence.isPhysicalSequence()){
+            Number value = (Number) entityManager.createNativeQuery(dialect.getSequenceNextValString(name)).getSingleResult();
+            if (value.longValue() < next){
+                entityManager.createNativeQuery("alter sequence " + name + " restart with " + next).executeUpdate();
+            }
+        } else {
+            entityManager.createNativeQuery("update " + name + " set " + SequenceStyleGenerator.DEF_VALUE_COLUMN + " = :next"
+                    + " where " + SequenceStyleGenerator.DEF_VALUE_COLUMN + " < :next")
+                .setParameter("next", next)
+                .executeUpdate();
+        }
+    }
+}
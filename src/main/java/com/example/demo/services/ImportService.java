@@ -0,0 +1,198 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.ImportReport;
+import com.example.demo.entities.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+// Bulk loads of patients and doctors, parsed row by row as the upload arrives. Valid rows are inserted a chunk
+// at a time, each chunk in its own transaction and JDBC batches, and the persistence context is cleared
+// after every chunk so memory does not grow with the upload.
+@Service
+public class ImportService {
+
+    private static final int MAX_REJECTIONS = 100;
+
+    private static final ObjectReader CSV_READER = new CsvMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .readerFor(Row.class)
+            .with(CsvSchema.emptySchema().withHeader());
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${imports.chunk-size:1000}")
+    int chunkSize;
+
+    @Value("${imports.batch-size:50}")
+    int batchSize;
+
+    public ImportReport importPatients(InputStream in, boolean csv) throws IOException {
+        return importRows(in, csv, r -> new Patient(r.firstName, r.lastName, r.age, r.email));
+    }
+
+    public ImportReport importDoctors(InputStream in, boolean csv) throws IOException {
+        return importRows(in, csv, r -> new Doctor(r.firstName, r.lastName, r.age, r.email));
+    }
+
+    // One column or property per Person field
+    static class Row {
+        public String firstName;
+        public String lastName;
+        public Integer age;
+        public String email;
+    }
+
+    private ImportReport importRows(InputStream in, boolean csv, Function<Row, Person> entity) throws IOException {
+        Chunks chunks = new Chunks(entity, System.currentTimeMillis());
+        if (csv){
+            readCsv(in, chunks);
+        } else {
+            readNdjson(in, chunks);
+        }
+        return chunks.finish();
+    }
+
+    private void readCsv(InputStream in, Chunks chunks) throws IOException {
+        try (MappingIterator<Row> rows = CSV_READER.readValues(in)){
+            for (long row = 1; ; row++){
+                try {
+                    if (!rows.hasNextValue()){
+                        return;
+                    }
+                } catch (IOException | RuntimeJsonMappingException e){
+                    // Nothing after this point can be read
+                    chunks.reject(row, "unreadable CSV: " + firstLine(e));
+                    return;
+                }
+                try {
+                    chunks.accept(row, rows.nextValue());
+                } catch (IOException | RuntimeJsonMappingException e){
+                    // The iterator skips to the next record
+                    chunks.reject(row, firstLine(e));
+                }
+            }
+        }
+    }
+
+    // One document per line, so a malformed line costs only that line
+    private void readNdjson(InputStream in, Chunks chunks) throws IOException {
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))){
+            long row = 0;
+            for (String line; (line = lines.readLine()) != null; ){
+                row++;
+                if (line.trim().isEmpty()){
+                    continue;
+                }
+                try {
+                    chunks.accept(row, objectMapper.readValue(line, Row.class));
+                } catch (JsonProcessingException e){
+                    chunks.reject(row, firstLine(e));
+                }
+            }
+        }
+    }
+
+    // A row needs both names, a plausible age and an email address
+    private static String invalid(Row r){
+        if (r.firstName == null || r.firstName.trim().isEmpty() || r.lastName == null || r.lastName.trim().isEmpty()){
+            return "missing name";
+        }
+        if (r.age == null || r.age < 0 || r.age > 150){
+            return "invalid age";
+        }
+        if (r.email == null || r.email.indexOf('@') <= 0){
+            return "invalid email";
+        }
+        return null;
+    }
+
+    private static String firstLine(Exception e){
+        return String.valueOf(e.getMessage()).split("\n")[0];
+    }
+
+    private class Chunks {
+
+        private final Function<Row, Person> entity;
+        private final long started;
+        private final List<Person> chunk = new ArrayList<>();
+        private final List<ImportReport.Rejection> rejections = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        Chunks(Function<Row, Person> entity, long started){
+            this.entity = entity;
+            this.started = started;
+        }
+
+        void accept(long row, Row r){
+            String reason = invalid(r);
+            if (reason != null){
+                reject(row, reason);
+                return;
+            }
+            chunk.add(entity.apply(r));
+            if (chunk.size() >= chunkSize){
+                flush();
+            }
+        }
+
+        void reject(long row, String reason){
+            rejected++;
+            if (rejections.size() < MAX_REJECTIONS){
+                rejections.add(new ImportReport.Rejection(row, reason));
+            }
+        }
+
+        ImportReport finish(){
+            flush();
+            return new ImportReport(imported, rejected, System.currentTimeMillis() - started, rejections);
+        }
+
+        private void flush(){
+            if (chunk.isEmpty()){
+                return;
+            }
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                chunk.forEach(entityManager::persist);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            imported += chunk.size();
+            chunk.clear();
+        }
+    }
+}
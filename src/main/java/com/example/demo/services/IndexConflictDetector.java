@@ -0,0 +1,24 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.Appointment;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Answers from the in-memory AppointmentIndex; only valid while this instance is the single writer
+@Component
+@ConditionalOnProperty(name = "appointments.conflict-detection", havingValue = "index", matchIfMissing = true)
+public class IndexConflictDetector implements ConflictDetector {
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    @Autowired
+    ConflictMetrics conflictMetrics;
+
+    @Override
+    public boolean conflicts(Appointment appointment){
+        return appointmentIndex.conflicts(appointment, conflictMetrics::scanned);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Asks the database for the few rows around the requested range, in a single statement covering the room,
+// the doctor and the patient, each seeking the (resource, starts_at) and (resource, finishes_at) indexes on Appointment
+@Component
+@ConditionalOnProperty(name = "appointments.conflict-detection", havingValue = "query")
+public class QueryConflictDetector implements ConflictDetector {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    ConflictMetrics conflictMetrics;
+
+    @Override
+    public boolean conflicts(Appointment appointment){
+        if (appointment.getStartsAt() == null || appointment.getFinishesAt() == null){
+            return false;
+        }
+
+        AppointmentSlot slot = AppointmentSlot.of(appointment);
+        AppointmentRepository.ConflictScan scan = appointmentRepository.scanConflicting(slot.getRoomName(), slot.getDoctorId(),
+                slot.getPatientId(), slot.getStartsAt(), slot.getFinishesAt());
+        conflictMetrics.scanned((int) scan.getScanned());
+        return scan.getConflicting() > 0;
+    }
+}
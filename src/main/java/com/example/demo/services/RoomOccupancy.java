@@ -0,0 +1,203 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.entities.Appointment;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Occupancy of every room as one bitmap per day, a bit per 5-minute cell (288 cells in 5 longs).
+// A cell is busy when any appointment covers part of it, so "free" answers are exact only on the 5-minute grid.
+@Component
+public class RoomOccupancy {
+
+    public static final int CELL_MINUTES = 5;
+    public static final int CELLS_PER_DAY = 24 * 60 / CELL_MINUTES;
+
+    private static final int CELL_SECONDS = CELL_MINUTES * 60;
+    private static final int WORDS_PER_DAY = (CELLS_PER_DAY + 63) / 64;
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    // Swapped as a whole by load and clear, like the timelines of the index it is built from
+    private volatile Map<String, Days> rooms = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load(){
+        Map<String, Days> loaded = new ConcurrentHashMap<>();
+        for (AppointmentSlot slot : appointmentIndex.slots()){
+            if (placeable(slot)){
+                loaded.computeIfAbsent(slot.getRoomName(), key -> new Days()).mark(slot.getStartsAt(), slot.getFinishesAt());
+            }
+        }
+        rooms = loaded;
+    }
+
+    public void add(Appointment appointment){
+        add(AppointmentSlot.of(appointment));
+    }
+
+    public void add(AppointmentSlot slot){
+        if (!placeable(slot)){
+            return;
+        }
+        rooms.computeIfAbsent(slot.getRoomName(), key -> new Days()).mark(slot.getStartsAt(), slot.getFinishesAt());
+    }
+
+    // Cells may be shared with other appointments, so the days the removed one covered are rebuilt
+    // from the slots left in the index; call this after removing it there
+    public void remove(Appointment appointment){
+        remove(AppointmentSlot.of(appointment));
+    }
+
+    public void remove(AppointmentSlot slot){
+        if (!placeable(slot)){
+            return;
+        }
+        Days days = rooms.get(slot.getRoomName());
+        if (days == null){
+            return;
+        }
+
+        LocalDate last = lastDay(slot.getFinishesAt());
+        for (LocalDate day = slot.getStartsAt().toLocalDate(); !day.isAfter(last); day = day.plusDays(1)){
+            days.rebuild(day, slot.getRoomName(), appointmentIndex);
+        }
+    }
+
+    public void clear(){
+        rooms = new ConcurrentHashMap<>();
+    }
+
+    // Whole cells of the day, from startCell (inclusive) to endCell (exclusive)
+    public boolean isFree(String roomName, LocalDate day, int startCell, int endCell){
+        Days days = rooms.get(roomName);
+        return days == null || days.isFree(day, startCell, endCell);
+    }
+
+    public boolean isFree(String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        LocalDate last = lastDay(finishesAt);
+        for (LocalDate day = startsAt.toLocalDate(); !day.isAfter(last); day = day.plusDays(1)){
+            if (!isFree(roomName, day, firstCell(day, startsAt), endCell(day, finishesAt))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Copies of the bitmaps of the given days; days with no bookings come back all zero
+    public Map<LocalDate, long[]> grid(String roomName, LocalDate from, int dayCount){
+        Days days = rooms.get(roomName);
+        Map<LocalDate, long[]> grid = new LinkedHashMap<>();
+        for (int i = 0; i < dayCount; i++){
+            LocalDate day = from.plusDays(i);
+            long[] bits = days == null ? null : days.get(day);
+            grid.put(day, bits == null ? new long[WORDS_PER_DAY] : bits);
+        }
+        return grid;
+    }
+
+    public static boolean isBusy(long[] bits, int cell){
+        return (bits[cell >>> 6] & (1L << (cell & 63))) != 0;
+    }
+
+    private static boolean placeable(AppointmentSlot slot){
+        return slot.getRoomName() != null && slot.getStartsAt() != null && slot.getFinishesAt() != null
+                && slot.getStartsAt().isBefore(slot.getFinishesAt());
+    }
+
+    private static LocalDate lastDay(LocalDateTime finishesAt){
+        // An appointment finishing at midnight does not reach into that day
+        LocalDate day = finishesAt.toLocalDate();
+        return finishesAt.toLocalTime().toSecondOfDay() == 0 && finishesAt.getNano() == 0 ? day.minusDays(1) : day;
+    }
+
+    private static int firstCell(LocalDate day, LocalDateTime startsAt){
+        return startsAt.toLocalDate().isBefore(day) ? 0 : startsAt.toLocalTime().toSecondOfDay() / CELL_SECONDS;
+    }
+
+    private static int endCell(LocalDate day, LocalDateTime finishesAt){
+        if (finishesAt.toLocalDate().isAfter(day)){
+            return CELLS_PER_DAY;
+        }
+        int seconds = finishesAt.toLocalTime().toSecondOfDay() + (finishesAt.getNano() > 0 ? 1 : 0);
+        return (seconds + CELL_SECONDS - 1) / CELL_SECONDS;
+    }
+
+    private static void set(long[] bits, int startCell, int endCell){
+        for (int cell = startCell; cell < endCell; ){
+            int word = cell >>> 6;
+            int upTo = Math.min(endCell, (word + 1) << 6);
+            bits[word] |= mask(cell & 63, upTo - (word << 6));
+            cell = upTo;
+        }
+    }
+
+    // Bits from (inclusive) to (exclusive) of one word, 0 <= from < to <= 64
+    private static long mask(int from, int to){
+        long upper = to == 64 ? -1L : (1L << to) - 1;
+        return upper & (-1L << from);
+    }
+
+    // Bitmaps of a single room, by day
+    private static class Days {
+
+        private final Map<LocalDate, long[]> byDay = new HashMap<>();
+
+        synchronized void mark(LocalDateTime startsAt, LocalDateTime finishesAt){
+            LocalDate last = lastDay(finishesAt);
+            for (LocalDate day = startsAt.toLocalDate(); !day.isAfter(last); day = day.plusDays(1)){
+                set(byDay.computeIfAbsent(day, key -> new long[WORDS_PER_DAY]), firstCell(day, startsAt), endCell(day, finishesAt));
+            }
+        }
+
+        // Holding the lock while reading the index: a booking added there meanwhile is either read here or marked after
+        synchronized void rebuild(LocalDate day, String roomName, AppointmentIndex index){
+            LocalDateTime from = day.atStartOfDay();
+            long[] bits = new long[WORDS_PER_DAY];
+            boolean empty = true;
+            for (AppointmentSlot slot : index.roomSlots(roomName, from, from.plusDays(1))){
+                if (slot.getStartsAt().isBefore(slot.getFinishesAt())){
+                    set(bits, firstCell(day, slot.getStartsAt()), endCell(day, slot.getFinishesAt()));
+                    empty = false;
+                }
+            }
+            if (empty){
+                byDay.remove(day);
+            } else {
+                byDay.put(day, bits);
+            }
+        }
+
+        synchronized boolean isFree(LocalDate day, int startCell, int endCell){
+            long[] bits = byDay.get(day);
+            if (bits == null){
+                return true;
+            }
+            for (int cell = startCell; cell < endCell; ){
+                int word = cell >>> 6;
+                int upTo = Math.min(endCell, (word + 1) << 6);
+                if ((bits[word] & mask(cell & 63, upTo - (word << 6))) != 0){
+                    return false;
+                }
+                cell = upTo;
+            }
+            return true;
+        }
+
+        synchronized long[] get(LocalDate day){
+            long[] bits = byDay.get(day);
+            return bits == null ? null : bits.clone();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.dto.FreeSlot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Timelines of every room, doctor and patient, and the slots they were built from. Behind the AppointmentIndex,
+// and on its own as the scratch timeline a batch is swept against.
+class Timelines {
+
+    private final Map<String, Timeline> rooms = new ConcurrentHashMap<>();
+    private final Map<Long, Timeline> doctors = new ConcurrentHashMap<>();
+    private final Map<Long, Timeline> patients = new ConcurrentHashMap<>();
+    private final Map<Long, AppointmentSlot> slots = new ConcurrentHashMap<>();
+
+    void add(AppointmentSlot slot){
+        if (slot.getStartsAt() == null || slot.getFinishesAt() == null){
+            return;
+        }
+
+        AppointmentSlot previous = slots.put(slot.getId(), slot);
+        if (previous != null){
+            forEachTimeline(previous, timeline -> timeline.remove(previous));
+        }
+        forEachTimeline(slot, timeline -> timeline.add(slot));
+    }
+
+    AppointmentSlot remove(long id){
+        AppointmentSlot slot = slots.remove(id);
+        if (slot != null){
+            forEachTimeline(slot, timeline -> timeline.remove(slot));
+        }
+        return slot;
+    }
+
+    private void forEachTimeline(AppointmentSlot slot, Consumer<Timeline> action){
+        if (slot.getRoomName() != null){
+            action.accept(rooms.computeIfAbsent(slot.getRoomName(), key -> new Timeline()));
+        }
+        if (slot.getDoctorId() != null){
+            action.accept(doctors.computeIfAbsent(slot.getDoctorId(), key -> new Timeline()));
+        }
+        if (slot.getPatientId() != null){
+            action.accept(patients.computeIfAbsent(slot.getPatientId(), key -> new Timeline()));
+        }
+    }
+
+    boolean roomOverlaps(AppointmentSlot slot){
+        return overlaps(rooms, slot.getRoomName(), slot, entries -> {});
+    }
+
+    boolean conflicts(AppointmentSlot slot){
+        return conflicts(slot, entries -> {});
+    }
+
+    // Room, doctor and patient are three independent lookups, each O(log n) in that resource's bookings
+    boolean conflicts(AppointmentSlot slot, IntConsumer examined){
+        return overlaps(rooms, slot.getRoomName(), slot, examined)
+                || overlaps(doctors, slot.getDoctorId(), slot, examined)
+                || overlaps(patients, slot.getPatientId(), slot, examined);
+    }
+
+    List<FreeSlot> freeRoomSlots(String roomName, LocalDateTime from, LocalDateTime to, Duration duration, int limit){
+        return freeSlots(rooms, roomName, from, to, duration, limit);
+    }
+
+    List<FreeSlot> freeDoctorSlots(long doctorId, LocalDateTime from, LocalDateTime to, Duration duration, int limit){
+        return freeSlots(doctors, doctorId, from, to, duration, limit);
+    }
+
+    List<AppointmentSlot> roomSlots(String roomName, LocalDateTime from, LocalDateTime to){
+        return during(rooms, roomName, from, to);
+    }
+
+    List<AppointmentSlot> doctorSlots(long doctorId, LocalDateTime from, LocalDateTime to){
+        return during(doctors, doctorId, from, to);
+    }
+
+    List<AppointmentSlot> patientSlots(long patientId, LocalDateTime from, LocalDateTime to){
+        return during(patients, patientId, from, to);
+    }
+
+    Collection<AppointmentSlot> slots(){
+        return Collections.unmodifiableCollection(slots.values());
+    }
+
+    int size(){
+        return slots.size();
+    }
+
+    private static <K> boolean overlaps(Map<K, Timeline> timelines, K key, AppointmentSlot slot, IntConsumer examined){
+        if (key == null){
+            return false;
+        }
+        Timeline timeline = timelines.get(key);
+        return timeline != null && timeline.overlaps(slot.getStartsAt(), slot.getFinishesAt(), examined);
+    }
+
+    private static <K> List<AppointmentSlot> during(Map<K, Timeline> timelines, K key, LocalDateTime from, LocalDateTime to){
+        Timeline timeline = timelines.get(key);
+        return timeline == null ? Collections.<AppointmentSlot>emptyList() : timeline.during(from, to);
+    }
+
+    private static <K> List<FreeSlot> freeSlots(Map<K, Timeline> timelines, K key, LocalDateTime from, LocalDateTime to, Duration duration, int limit){
+        Timeline timeline = timelines.get(key);
+        if (timeline == null){
+            timeline = new Timeline();
+        }
+        return timeline.gaps(from, to, duration, limit);
+    }
+
+    // Slots of a single resource, sorted both by start and by finish
+    private static class Timeline {
+
+        private final NavigableMap<LocalDateTime, List<AppointmentSlot>> byStart = new TreeMap<>();
+        private final NavigableMap<LocalDateTime, List<AppointmentSlot>> byFinish = new TreeMap<>();
+
+        // Longest slot ever added: no slot starting earlier than that before a time can still be running at it
+        private Duration longest = Duration.ZERO;
+
+        synchronized void add(AppointmentSlot slot){
+            byStart.computeIfAbsent(slot.getStartsAt(), key -> new ArrayList<>()).add(slot);
+            byFinish.computeIfAbsent(slot.getFinishesAt(), key -> new ArrayList<>()).add(slot);
+
+            Duration length = Duration.between(slot.getStartsAt(), slot.getFinishesAt());
+            if (length.compareTo(longest) > 0){
+                longest = length;
+            }
+        }
+
+        synchronized void remove(AppointmentSlot slot){
+            removeFrom(byStart, slot.getStartsAt(), slot);
+            removeFrom(byFinish, slot.getFinishesAt(), slot);
+        }
+
+        // Same cases as Appointment.overlaps: a slot with the same start or the same finish, or a slot that starts
+        // or finishes strictly inside (startsAt, finishesAt). Only the first start from startsAt on and the first
+        // finish after it can decide that, so examined is told how many of those two neighbours there were.
+        synchronized boolean overlaps(LocalDateTime startsAt, LocalDateTime finishesAt, IntConsumer examined){
+            LocalDateTime start = byStart.ceilingKey(startsAt);
+            LocalDateTime finish = startsAt.isBefore(finishesAt) ? byFinish.higherKey(startsAt) : byFinish.ceilingKey(finishesAt);
+            examined.accept((start == null ? 0 : 1) + (finish == null ? 0 : 1));
+
+            boolean startsInside = start != null && (start.equals(startsAt) || start.isBefore(finishesAt));
+            boolean finishesInside = finish != null && (finish.equals(finishesAt) || finish.isBefore(finishesAt));
+            return startsInside || finishesInside;
+        }
+
+        synchronized List<AppointmentSlot> during(LocalDateTime from, LocalDateTime to){
+            List<AppointmentSlot> during = new ArrayList<>();
+            for (List<AppointmentSlot> bucket : byStart.subMap(from.minus(longest), true, to, false).values()){
+                for (AppointmentSlot slot : bucket){
+                    if (slot.getFinishesAt().isAfter(from)){
+                        during.add(slot);
+                    }
+                }
+            }
+            return during;
+        }
+
+        // Walks the slots starting in [from, to) in start order, keeping the latest finish seen so far;
+        // any stretch between that finish and the next start that fits the duration is free
+        synchronized List<FreeSlot> gaps(LocalDateTime from, LocalDateTime to, Duration duration, int limit){
+            if (limit <= 0){
+                return Collections.emptyList();
+            }
+
+            LocalDateTime cursor = from;
+            for (List<AppointmentSlot> bucket : byStart.subMap(from.minus(longest), true, from, false).values()){
+                for (AppointmentSlot slot : bucket){
+                    cursor = latest(cursor, slot.getFinishesAt());
+                }
+            }
+
+            List<FreeSlot> gaps = new ArrayList<>();
+            for (Map.Entry<LocalDateTime, List<AppointmentSlot>> entry : byStart.subMap(from, true, to, false).entrySet()){
+                if (!cursor.plus(duration).isAfter(entry.getKey())){
+                    gaps.add(new FreeSlot(cursor, entry.getKey()));
+                    if (gaps.size() == limit){
+                        return gaps;
+                    }
+                }
+                for (AppointmentSlot slot : entry.getValue()){
+                    cursor = latest(cursor, slot.getFinishesAt());
+                }
+            }
+            if (!cursor.plus(duration).isAfter(to)){
+                gaps.add(new FreeSlot(cursor, to));
+            }
+            return gaps;
+        }
+
+        private static LocalDateTime latest(LocalDateTime a, LocalDateTime b){
+            return a.isAfter(b) ? a : b;
+        }
+
+        private static void removeFrom(NavigableMap<LocalDateTime, List<AppointmentSlot>> map, LocalDateTime key, AppointmentSlot slot){
+            List<AppointmentSlot> bucket = map.get(key);
+            if (bucket == null){
+                return;
+            }
+            bucket.remove(slot);
+            if (bucket.isEmpty()){
+                map.remove(key);
+            }
+        }
+    }
+}
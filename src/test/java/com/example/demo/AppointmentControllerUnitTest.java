@@ -1,7 +1,12 @@
 package com.example.demo;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -9,19 +14,31 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import java.time.LocalDateTime;
 import java.time.format.*;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.LinkedMultiValueMap;
@@ -30,20 +47,59 @@ import org.springframework.util.MultiValueMap;
 import com.example.demo.controllers.AppointmentController;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.dto.AppointmentSummary;
+import com.example.demo.dto.BookingRequest;
+import com.example.demo.dto.BookingResult;
+import com.example.demo.dto.DeletedRows;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.AvailabilityService;
+import com.example.demo.services.BatchBookingService;
+import com.example.demo.services.BulkDeleteService;
+import com.example.demo.services.BookingLocks;
+import com.example.demo.services.ChangeWatermarks;
+import com.example.demo.services.ConflictMetrics;
+import com.example.demo.services.ExportService;
+import com.example.demo.services.IndexConflictDetector;
+import com.example.demo.services.RoomOccupancy;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.example.demo.BinaryFormatsConfiguration;
 
 @WebMvcTest(AppointmentController.class)
+@Import({AppointmentIndex.class, RoomOccupancy.class, AvailabilityService.class, IndexConflictDetector.class, BookingLocks.class, ChangeWatermarks.class, ConflictMetrics.class, SimpleMeterRegistry.class})
 class AppointmentControllerUnitTest{
 
     @MockBean
     private AppointmentRepository appointmentRepository;
 
+    @MockBean
+    private BatchBookingService batchBookingService;
+
+    @MockBean
+    private ExportService exportService;
+
+    @MockBean
+    private BulkDeleteService bulkDeleteService;
+
+    @Autowired
+    private AppointmentIndex appointmentIndex;
+
     @Autowired 
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void clearIndex(){
+        appointmentIndex.clear();
+    }
+
     @Test
     void shouldCreateAppointment() throws Exception {
         
@@ -108,10 +164,6 @@ class AppointmentControllerUnitTest{
 
 
 
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        appointments.add(appointment);
-        
-        when(appointmentRepository.findAll()).thenReturn(appointments);
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment2)))
                 .andExpect(status().isNotAcceptable());
@@ -147,10 +199,6 @@ class AppointmentControllerUnitTest{
 
 
 
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        appointments.add(appointment);
-        
-        when(appointmentRepository.findAll()).thenReturn(appointments);
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment2)))
                 .andExpect(status().isOk());
@@ -158,6 +206,36 @@ class AppointmentControllerUnitTest{
 
     }
     
+    @Test
+    void shouldNotDoubleBookDoctorInAnotherRoom() throws Exception {
+
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        doctor.setId(1);
+        patient.setId(1);
+        patient2.setId(2);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        Appointment appointment2 = new Appointment(patient2, doctor, room2, startsAt, finishesAt);
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment2)))
+                .andExpect(status().isNotAcceptable());
+    }
+
     @Test
     void shouldGetNoAppointments() throws Exception{
         List<Appointment> appointments = new ArrayList<Appointment>();
@@ -196,6 +274,183 @@ class AppointmentControllerUnitTest{
                 
     }
 
+    @Test
+    void shouldNotReadAppointmentsAgainUntilOneChanges() throws Exception{
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"),
+                LocalDateTime.of(2023, 4, 24, 19, 0), LocalDateTime.of(2023, 4, 24, 20, 0));
+        appointment.setId(1);
+
+        when(appointmentRepository.findAll()).thenReturn(Arrays.asList(appointment));
+        String etag = mockMvc.perform(get("/api/appointments"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).startsWith("\"");
+
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(appointmentRepository, times(1)).findAll();
+
+        // Another query string is another representation
+        mockMvc.perform(get("/api/appointments?fields=id").header("If-None-Match", etag))
+                .andExpect(status().isNoContent());
+
+        when(appointmentRepository.deleteRowById(1L)).thenReturn(1);
+        mockMvc.perform(delete("/api/appointments/1")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        verify(appointmentRepository, times(2)).findAll();
+    }
+
+    @Test
+    void shouldTagQueriesWithEqualHashCodesApart() throws Exception{
+        // "Aa" and "BB" have the same String.hashCode, so a 32-bit hash of the query string can't tell them apart
+        String etag = mockMvc.perform(get("/api/appointments?room=Aa"))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getHeader("ETag");
+
+        String other = mockMvc.perform(get("/api/appointments?room=BB").header("If-None-Match", etag))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(other).isNotEqualTo(etag);
+        mockMvc.perform(get("/api/appointments?room=Aa").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldGetFilteredAppointments() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment appointment = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("19:00 24/04/2023", formatter), LocalDateTime.parse("20:00 24/04/2023", formatter));
+
+        when(appointmentRepository.findAll(any(Specification.class), any(Sort.class))).thenReturn(Collections.singletonList(appointment));
+        mockMvc.perform(get("/api/appointments").param("room", "Dermatology")
+                .param("from", "00:00 24/04/2023").param("to", "00:00 25/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].room.roomName").value("Dermatology"));
+
+        verify(appointmentRepository, never()).findAll();
+    }
+
+    @Test
+    void shouldNotGetAppointmentsForReversedRange() throws Exception{
+        mockMvc.perform(get("/api/appointments")
+                .param("from", "00:00 25/04/2023").param("to", "00:00 24/04/2023"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldGetAppointmentsPage() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 0);
+        List<Appointment> appointments = new ArrayList<Appointment>();
+        for (int i = 1; i <= 3; i++){
+            Appointment appointment = new Appointment(patient, doctor, room, startsAt.plusHours(i), startsAt.plusHours(i + 1));
+            appointment.setId(i);
+            appointments.add(appointment);
+        }
+
+        String next = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("2023-04-24T21:00\n2".getBytes(StandardCharsets.UTF_8));
+
+        when(appointmentRepository.findPage(any(), any(), eq(3))).thenReturn(appointments);
+        mockMvc.perform(get("/api/appointments").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().string("Link", "<http://localhost/api/appointments?after=" + next + "&limit=2>; rel=\"next\""));
+
+        verify(appointmentRepository, never()).findAll();
+    }
+
+    @Test
+    void shouldNotGetAppointmentsPageWithBadCursor() throws Exception{
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString("yesterday\n2".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(get("/api/appointments").param("after", cursor))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldExportAppointmentsAsNdjson() throws Exception{
+        mockMvc.perform(get("/api/appointments/export").param("format", "ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"));
+
+        verify(exportService).exportAppointments(any(), eq(true));
+    }
+
+    @Test
+    void shouldNotExportAppointmentsInUnknownFormat() throws Exception{
+        mockMvc.perform(get("/api/appointments/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldGetAppointmentSummaries() throws Exception{
+        AppointmentSummary summary = new AppointmentSummary(1, LocalDateTime.of(2023, 4, 24, 19, 0), LocalDateTime.of(2023, 4, 24, 20, 0),
+                "Dermatology", 2L, 3L);
+
+        when(appointmentRepository.findSummaries(any(), any(), any())).thenReturn(Collections.singletonList(summary));
+        mockMvc.perform(get("/api/appointments").param("expand", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].roomName").value("Dermatology"))
+                .andExpect(jsonPath("$[0].doctorId").value(2))
+                .andExpect(jsonPath("$[0].startsAt").value("19:00 24/04/2023"))
+                .andExpect(jsonPath("$[0].doctor").doesNotExist());
+
+        verify(appointmentRepository, never()).findAll();
+    }
+
+    @Test
+    void shouldGetAppointmentFieldsFromSummaryColumns() throws Exception{
+        AppointmentSummary summary = new AppointmentSummary(1, LocalDateTime.of(2023, 4, 24, 19, 0), null, "Dermatology", null, null);
+        Set<String> fields = new HashSet<>(Arrays.asList("id", "startsAt", "roomName"));
+
+        when(appointmentRepository.findSummaries(any(), any(), eq(fields))).thenReturn(Collections.singletonList(summary));
+        mockMvc.perform(get("/api/appointments").param("fields", "id,startsAt,roomName"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].startsAt").value("19:00 24/04/2023"))
+                .andExpect(jsonPath("$[0].roomName").value("Dermatology"))
+                .andExpect(jsonPath("$[0].finishesAt").doesNotExist())
+                .andExpect(jsonPath("$[0].doctorId").doesNotExist());
+
+        verify(appointmentRepository, never()).findAll();
+    }
+
+    @Test
+    void shouldGetAppointmentFieldsOfEmbeddedShape() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Appointment appointment = new Appointment(patient, doctor, new Room("Dermatology"),
+                LocalDateTime.of(2023, 4, 24, 19, 0), LocalDateTime.of(2023, 4, 24, 20, 0));
+        appointment.setId(1);
+
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+        mockMvc.perform(get("/api/appointments/1").param("fields", "id,doctor"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.doctor.firstName").value("Perla"))
+                .andExpect(jsonPath("$.patient").doesNotExist())
+                .andExpect(jsonPath("$.startsAt").doesNotExist());
+    }
+
+    @Test
+    void shouldNotGetUnknownAppointmentFields() throws Exception{
+        mockMvc.perform(get("/api/appointments").param("fields", "id,roomName,doctor"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldGetAppointmentById() throws Exception{
         Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
@@ -224,6 +479,70 @@ class AppointmentControllerUnitTest{
                 
     }
     
+    @Test
+    void shouldGetAppointmentAsCbor() throws Exception{
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"),
+                LocalDateTime.of(2023, 4, 24, 19, 0), LocalDateTime.of(2023, 4, 24, 20, 0));
+        appointment.setId(1);
+
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+        byte[] body = mockMvc.perform(get("/api/appointments/1").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // 19:00 24/04/2023 as epoch milliseconds
+        JsonNode tree = new CBORMapper().readTree(body);
+        assertThat(tree.get("startsAt").isIntegralNumber()).isTrue();
+        assertThat(tree.get("startsAt").asLong()).isEqualTo(1682362800000L);
+        assertThat(tree.get("room").get("roomName").asText()).isEqualTo("Dermatology");
+    }
+
+    @Test
+    void shouldGetSelectedFieldsAsCbor() throws Exception{
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"),
+                LocalDateTime.of(2023, 4, 24, 19, 0), LocalDateTime.of(2023, 4, 24, 20, 0));
+        appointment.setId(1);
+
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+        byte[] body = mockMvc.perform(get("/api/appointments/1?fields=id,startsAt").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Still epoch milliseconds, as without a fieldset
+        JsonNode tree = new CBORMapper().readTree(body);
+        assertThat(tree.size()).isEqualTo(2);
+        assertThat(tree.get("startsAt").isIntegralNumber()).isTrue();
+        assertThat(tree.get("startsAt").asLong()).isEqualTo(1682362800000L);
+
+        // and text for JSON
+        mockMvc.perform(get("/api/appointments/1?fields=id,startsAt"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.startsAt").value("19:00 24/04/2023"))
+                .andExpect(jsonPath("$.room").doesNotExist());
+    }
+
+    @Test
+    void shouldCreateAppointmentFromSmile() throws Exception{
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"),
+                LocalDateTime.of(2023, 4, 24, 19, 30), LocalDateTime.of(2023, 4, 24, 20, 30));
+
+        SmileMapper smileMapper = new SmileMapper();
+        smileMapper.registerModule(BinaryFormatsConfiguration.epochDates());
+
+        mockMvc.perform(post("/api/appointment").contentType("application/x-jackson-smile")
+                .content(smileMapper.writeValueAsBytes(appointment)))
+                .andExpect(status().isOk());
+
+        verify(appointmentRepository).save(argThat(a -> a.getStartsAt().equals(LocalDateTime.of(2023, 4, 24, 19, 30))
+                && a.getRoom().getRoomName().equals("Dermatology")));
+    }
+
     @Test
     void shouldNotGetAnyAppointmentById() throws Exception{
         long id = 31;
@@ -254,10 +573,23 @@ class AppointmentControllerUnitTest{
         assertThat(opt.get().getId()).isEqualTo(appointment.getId());
         assertThat(appointment.getId()).isEqualTo(1);
 
-        when(appointmentRepository.findById(appointment.getId())).thenReturn(opt);
+        appointmentIndex.add(appointment);
+        when(appointmentRepository.deleteRowById(appointment.getId())).thenReturn(1);
         mockMvc.perform(delete("/api/appointments/" + appointment.getId()))
                 .andExpect(status().isOk());
-                
+
+        verify(appointmentRepository, never()).findById(any());
+        assertThat(appointmentIndex.slots()).isEmpty();
+    }
+
+    @Test
+    void shouldTellWhetherAppointmentExists() throws Exception{
+        when(appointmentRepository.existsById(1L)).thenReturn(true);
+
+        mockMvc.perform(head("/api/appointments/1")).andExpect(status().isOk());
+        mockMvc.perform(head("/api/appointments/2")).andExpect(status().isNotFound());
+
+        verify(appointmentRepository, never()).findById(any());
     }
 
     @Test
@@ -268,10 +600,148 @@ class AppointmentControllerUnitTest{
                 
     }
 
+    @Test
+    void shouldBookAppointmentsInBatch() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        List<Appointment> appointments = Arrays.asList(
+                new Appointment(patient, doctor, room, startsAt, finishesAt),
+                new Appointment(patient, doctor, room, startsAt, finishesAt));
+
+        when(batchBookingService.book(any())).thenReturn(Arrays.asList(BookingResult.booked(0, 1), BookingResult.conflict(1)));
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointments)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("BOOKED"))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].status").value("CONFLICT"));
+    }
+
+    @Test
+    void shouldBookAppointmentByReference() throws Exception{
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment saved = new Appointment();
+        saved.setId(7);
+        when(appointmentRepository.saveByReference(any())).thenReturn(saved);
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BookingRequest(2L, 3L, "Dermatology", startsAt, finishesAt))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.status").value("BOOKED"))
+                .andExpect(jsonPath("$.id").value(7));
+
+        verify(appointmentRepository).saveByReference(argThat(a -> a.getPatient().getId() == 2
+                && a.getDoctor().getId() == 3 && a.getRoom().getRoomName().equals("Dermatology")));
+        verify(appointmentRepository, never()).save(any());
+
+        // The same doctor elsewhere at the same time is taken
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BookingRequest(4L, 3L, "Cardiology", startsAt, finishesAt))))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldNotBookAppointmentOfUnknownReference() throws Exception{
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        when(appointmentRepository.saveByReference(any())).thenThrow(new DataIntegrityViolationException("doctor_id"));
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BookingRequest(2L, 99L, "Dermatology", startsAt, finishesAt))))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BookingRequest(2L, 3L, "Dermatology", finishesAt, startsAt))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldNotBookAppointmentWithMissingReference() throws Exception{
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        for (BookingRequest incomplete : Arrays.asList(new BookingRequest(null, 3L, "Dermatology", startsAt, finishesAt),
+                new BookingRequest(2L, null, "Dermatology", startsAt, finishesAt),
+                new BookingRequest(2L, 3L, null, startsAt, finishesAt))){
+            mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(incomplete)))
+                    .andExpect(status().isBadRequest());
+        }
+        verify(appointmentRepository, never()).saveByReference(any());
+    }
+
+    @Test
+    void shouldTimeConflictChecks() throws Exception{
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment saved = new Appointment();
+        saved.setId(7);
+        when(appointmentRepository.saveByReference(any())).thenReturn(saved);
+        long before = meterRegistry.get("appointments.conflict.check").timer().count();
+        double scanned = meterRegistry.get("appointments.conflict.rows.scanned").counter().count();
+
+        for (int i = 0; i < 2; i++){
+            mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(new BookingRequest(2L, 3L, "Dermatology", startsAt, finishesAt))));
+        }
+
+        // The index answers without reading any appointment rows: the first booking finds an empty timeline,
+        // the second reads the start and the finish of the first in the room's timeline
+        assertThat(meterRegistry.get("appointments.conflict.check").tag("detection", "index").timer().count()).isEqualTo(before + 2);
+        assertThat(meterRegistry.get("appointments.conflict.rows.scanned").counter().count()).isEqualTo(scanned + 2);
+    }
+
+    @Test
+    void shouldFindAvailability() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(1);
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment appointment = new Appointment(patient, doctor, new Room("Oncology"),
+                LocalDateTime.parse("09:00 24/04/2023", formatter), LocalDateTime.parse("10:00 24/04/2023", formatter));
+        appointment.setId(1);
+        appointmentIndex.add(appointment);
+
+        mockMvc.perform(get("/api/availability").param("doctorId", "1").param("room", "Dermatology", "Cardiology")
+                .param("from", "09:00 24/04/2023").param("to", "11:00 24/04/2023").param("duration", "30"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].roomName").value("Cardiology"))
+                .andExpect(jsonPath("$[0].startsAt").value("10:00 24/04/2023"))
+                .andExpect(jsonPath("$[1].roomName").value("Dermatology"));
+    }
+
     @Test
     void shouldDeleteAllAppointments() throws Exception{
+        when(bulkDeleteService.deleteAllAppointments()).thenReturn(new DeletedRows(5, 0, 0, 0));
+
         mockMvc.perform(delete("/api/appointments"))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.appointments").value(5));
+
+        verify(appointmentRepository, never()).deleteAll();
                 
     }
 }
@@ -0,0 +1,220 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.dto.FreeSlot;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.services.AppointmentIndex;
+
+class AppointmentIndexUnitTest {
+
+    private AppointmentIndex index;
+
+    private Patient patient;
+    private Doctor doctor;
+    private Room room;
+
+    private DateTimeFormatter formatter;
+
+    @BeforeEach
+    void setUp(){
+        index = new AppointmentIndex();
+
+        patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        room = new Room("Dermatology");
+
+        formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+    }
+
+    @Test
+    void shouldDetectOverlapInSameRoom(){
+        index.add(appointment(1, room, "19:30 24/04/2023", "20:00 24/04/2023"));
+
+        assertThat(index.overlaps(appointment(2, room, "19:45 24/04/2023", "20:15 24/04/2023"))).isTrue();
+    }
+
+    @Test
+    void shouldNotDetectOverlapInOtherRoom(){
+        index.add(appointment(1, room, "19:30 24/04/2023", "20:00 24/04/2023"));
+
+        assertThat(index.overlaps(appointment(2, new Room("Oncology"), "19:30 24/04/2023", "20:00 24/04/2023"))).isFalse();
+    }
+
+    @Test
+    void shouldDetectDoctorDoubleBookingInOtherRoom(){
+        doctor.setId(1);
+        index.add(appointment(1, room, "19:30 24/04/2023", "20:00 24/04/2023"));
+
+        Appointment elsewhere = appointment(2, new Room("Oncology"), "19:45 24/04/2023", "20:15 24/04/2023");
+        elsewhere.setPatient(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"));
+
+        assertThat(index.overlaps(elsewhere)).isFalse();
+        assertThat(index.conflicts(elsewhere)).isTrue();
+    }
+
+    @Test
+    void shouldDetectPatientDoubleBookingInOtherRoom(){
+        patient.setId(1);
+        index.add(appointment(1, room, "19:30 24/04/2023", "20:00 24/04/2023"));
+
+        Appointment elsewhere = appointment(2, new Room("Oncology"), "19:30 24/04/2023", "20:00 24/04/2023");
+        elsewhere.setDoctor(new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+
+        assertThat(index.conflicts(elsewhere)).isTrue();
+    }
+
+    @Test
+    void shouldCountTimelineEntriesExamined(){
+        doctor.setId(1);
+        index.add(appointment(1, room, "19:30 24/04/2023", "20:00 24/04/2023"));
+        List<Integer> examined = new ArrayList<>();
+
+        // A free slot still reads the neighbours on either side of it, in the room's and in the doctor's timeline
+        assertThat(index.conflicts(appointment(2, room, "19:00 24/04/2023", "19:30 24/04/2023"), examined::add)).isFalse();
+        assertThat(examined.stream().mapToInt(Integer::intValue).sum()).isEqualTo(4);
+
+        examined.clear();
+        assertThat(index.conflicts(appointment(3, room, "20:00 24/04/2023", "20:30 24/04/2023"), examined::add)).isFalse();
+        assertThat(examined.stream().mapToInt(Integer::intValue).sum()).isZero();
+
+        examined.clear();
+        assertThat(index.conflicts(appointment(4, new Room("Oncology"), "19:45 24/04/2023", "20:15 24/04/2023"), examined::add)).isTrue();
+        assertThat(examined).containsExactly(1);
+    }
+
+    @Test
+    void shouldNotDetectOverlapAfterRemoval(){
+        Appointment booked = appointment(1, room, "19:30 24/04/2023", "20:00 24/04/2023");
+        index.add(booked);
+        index.remove(booked);
+
+        assertThat(index.size()).isZero();
+        assertThat(index.overlaps(appointment(2, room, "19:30 24/04/2023", "20:00 24/04/2023"))).isFalse();
+    }
+
+    @Test
+    void shouldKeepAnsweringFromOldTimelinesWhileLoading(){
+        Appointment booked = appointment(1, room, "19:30 24/04/2023", "20:00 24/04/2023");
+        Appointment overlapping = appointment(2, room, "19:45 24/04/2023", "20:15 24/04/2023");
+        index.add(booked);
+
+        // Checks made while the database is read still see the booking, and the loaded timelines replace them at once
+        AppointmentRepository repository = mock(AppointmentRepository.class);
+        when(repository.findAllSlots()).thenAnswer(invocation -> {
+            assertThat(index.conflicts(overlapping)).isTrue();
+            return Collections.singletonList(AppointmentSlot.of(booked));
+        });
+        ReflectionTestUtils.setField(index, "appointmentRepository", repository);
+
+        index.load();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.conflicts(overlapping)).isTrue();
+    }
+
+    @Test
+    void shouldMatchAppointmentOverlapsForEveryCombination(){
+        // Every pair of quarter-hour boundaries between 19:00 and 21:00, including reversed ranges
+        List<Appointment> appointments = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.parse("19:00 24/04/2023", formatter);
+        long id = 1;
+        for (int start = 0; start <= 8; start++){
+            for (int finish = 0; finish <= 8; finish++){
+                appointments.add(new Appointment(patient, doctor, room, base.plusMinutes(15L * start), base.plusMinutes(15L * finish)));
+                appointments.get(appointments.size() - 1).setId(id++);
+            }
+        }
+
+        for (Appointment booked : appointments){
+            index.clear();
+            index.add(booked);
+            for (Appointment candidate : appointments){
+                assertThat(index.overlaps(candidate))
+                    .as("%s-%s against %s-%s", candidate.getStartsAt(), candidate.getFinishesAt(), booked.getStartsAt(), booked.getFinishesAt())
+                    .isEqualTo(candidate.overlaps(booked));
+            }
+        }
+    }
+
+    @Test
+    void shouldFindFreeSlotsBetweenBookings(){
+        index.add(appointment(1, room, "09:30 24/04/2023", "10:00 24/04/2023"));
+        index.add(appointment(2, room, "10:15 24/04/2023", "11:00 24/04/2023"));
+        index.add(appointment(3, room, "11:30 24/04/2023", "12:00 24/04/2023"));
+
+        List<FreeSlot> slots = index.freeRoomSlots("Dermatology", time("09:00 24/04/2023"), time("13:00 24/04/2023"), Duration.ofMinutes(30), 10);
+
+        assertThat(slots).extracting(FreeSlot::getStartsAt)
+            .containsExactly(time("09:00 24/04/2023"), time("11:00 24/04/2023"), time("12:00 24/04/2023"));
+        assertThat(slots).extracting(FreeSlot::getFinishesAt)
+            .containsExactly(time("09:30 24/04/2023"), time("11:30 24/04/2023"), time("13:00 24/04/2023"));
+    }
+
+    @Test
+    void shouldStartFreeSlotsAfterRunningBooking(){
+        index.add(appointment(1, room, "08:00 24/04/2023", "10:00 24/04/2023"));
+        index.add(appointment(2, room, "09:00 24/04/2023", "09:30 24/04/2023"));
+
+        List<FreeSlot> slots = index.freeRoomSlots("Dermatology", time("09:00 24/04/2023"), time("11:00 24/04/2023"), Duration.ofMinutes(30), 10);
+
+        assertThat(slots).extracting(FreeSlot::getStartsAt).containsExactly(time("10:00 24/04/2023"));
+    }
+
+    @Test
+    void shouldLimitFreeSlots(){
+        for (int hour = 10; hour < 18; hour++){
+            index.add(appointment(hour, room, hour + ":00 24/04/2023", hour + ":30 24/04/2023"));
+        }
+
+        List<FreeSlot> slots = index.freeRoomSlots("Dermatology", time("09:00 24/04/2023"), time("18:00 24/04/2023"), Duration.ofMinutes(30), 3);
+
+        assertThat(slots).extracting(FreeSlot::getStartsAt)
+            .containsExactly(time("09:00 24/04/2023"), time("10:30 24/04/2023"), time("11:30 24/04/2023"));
+    }
+
+    @Test
+    void shouldFindWholeRangeFreeForUnbookedDoctor(){
+        List<FreeSlot> slots = index.freeDoctorSlots(7, time("09:00 24/04/2023"), time("10:00 24/04/2023"), Duration.ofMinutes(60), 10);
+
+        assertThat(slots).hasSize(1);
+        assertThat(slots.get(0).getFinishesAt()).isEqualTo(time("10:00 24/04/2023"));
+    }
+
+    @Test
+    void shouldBookEveryFreeSlotWithoutConflict(){
+        doctor.setId(1);
+        index.add(appointment(1, room, "09:30 24/04/2023", "10:00 24/04/2023"));
+        index.add(appointment(2, new Room("Oncology"), "10:45 24/04/2023", "11:15 24/04/2023"));
+
+        for (FreeSlot slot : index.freeDoctorSlots(1, time("09:00 24/04/2023"), time("12:00 24/04/2023"), Duration.ofMinutes(15), 10)){
+            Appointment candidate = new Appointment(patient, doctor, new Room("Urology"), slot.getStartsAt(), slot.getFinishesAt());
+            assertThat(index.conflicts(candidate)).isFalse();
+        }
+    }
+
+    private LocalDateTime time(String value){
+        return LocalDateTime.parse(value, formatter);
+    }
+
+    private Appointment appointment(long id, Room room, String startsAt, String finishesAt){
+        Appointment appointment = new Appointment(patient, doctor, room, LocalDateTime.parse(startsAt, formatter), LocalDateTime.parse(finishesAt, formatter));
+        appointment.setId(id);
+        return appointment;
+    }
+}
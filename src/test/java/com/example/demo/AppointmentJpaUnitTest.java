@@ -1,25 +1,44 @@
 package com.example.demo;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
 
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.dto.AppointmentSlot;
+import com.example.demo.dto.AppointmentSummary;
+import com.example.demo.dto.BookingRequest;
+import com.example.demo.services.AppointmentLengths;
 
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import(AppointmentLengths.class)
 class AppointmentJpaUnitTest {
 
+    // Longest appointment booked by the filter tests
+    private static final Duration HOUR = Duration.ofHours(1);
+
     @Autowired
     private TestEntityManager entityManager;
 
@@ -35,6 +54,9 @@ class AppointmentJpaUnitTest {
     @Autowired
     RoomRepository repoRooms;
 
+    @Autowired
+    AppointmentLengths appointmentLengths;
+
     @Test
     void should_find_no_appointments_if_repository_is_empty(){
         Iterable<Appointment> appointments = repoAppointments.findAll();
@@ -258,4 +280,391 @@ class AppointmentJpaUnitTest {
         assertThat(appointments).isEmpty();
     }
     
+    @Test
+    void should_find_all_slots(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+        LocalDateTime finishesAt = startsAt.plusHours(1);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        entityManager.persist(appointment);
+
+        List<AppointmentSlot> slots = repoAppointments.findAllSlots();
+
+        assertThat(slots).hasSize(1);
+        assertThat(slots.get(0))
+            .hasFieldOrPropertyWithValue("id", appointment.getId())
+            .hasFieldOrPropertyWithValue("roomName", "Dermatology")
+            .hasFieldOrPropertyWithValue("startsAt", startsAt)
+            .hasFieldOrPropertyWithValue("finishesAt", finishesAt);
+    }
+
+    @Test
+    void should_find_overlapping_slots_like_overlaps(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room otherRoom = new Room("Oncology");
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(otherRoom);
+
+        // Every pair of quarter-hour boundaries between 19:00 and 20:30, including reversed ranges
+        LocalDateTime base = LocalDateTime.of(2023, 4, 24, 19, 0);
+        List<Appointment> candidates = new ArrayList<>();
+        for (int start = 0; start <= 6; start++){
+            for (int finish = 0; finish <= 6; finish++){
+                candidates.add(new Appointment(patient, doctor, null, base.plusMinutes(15L * start), base.plusMinutes(15L * finish)));
+            }
+        }
+
+        // One room per booked range, next to an identical booking in another room that must never match
+        int roomNumber = 0;
+        for (Appointment booked : candidates){
+            Room room = entityManager.persist(new Room("Dermatology " + roomNumber++));
+            Appointment persisted = entityManager.persist(new Appointment(patient, doctor, room, booked.getStartsAt(), booked.getFinishesAt()));
+            entityManager.persist(new Appointment(patient, doctor, otherRoom, booked.getStartsAt(), booked.getFinishesAt()));
+            entityManager.flush();
+
+            for (Appointment candidate : candidates){
+                candidate.setRoom(room);
+                List<AppointmentSlot> found = repoAppointments.findOverlapping(room.getRoomName(), candidate.getStartsAt(), candidate.getFinishesAt());
+                assertThat(!found.isEmpty())
+                    .as("%s-%s against %s-%s", candidate.getStartsAt(), candidate.getFinishesAt(), booked.getStartsAt(), booked.getFinishesAt())
+                    .isEqualTo(candidate.overlaps(persisted));
+            }
+        }
+    }
+
+    @Test
+    void should_find_conflicting_slots_for_doctor_and_patient(){
+        Patient patient1 = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Mariela", "Eric", 42, "m.eric@email.com");
+        Doctor doctor1 = new Doctor ("Carina", "Zaray", 49, "c.zaray@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Reyna", "Cayetana", 28, "r.cayetana@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+
+        entityManager.persist(patient1);
+        entityManager.persist(patient2);
+        entityManager.persist(doctor1);
+        entityManager.persist(doctor2);
+        entityManager.persist(room1);
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+        LocalDateTime finishesAt = LocalDateTime.of(2023, 4, 24, 20, 0);
+        entityManager.persist(new Appointment(patient1, doctor1, room1, startsAt, finishesAt));
+
+        LocalDateTime startsAt2 = LocalDateTime.of(2023, 4, 24, 19, 45);
+        LocalDateTime finishesAt2 = LocalDateTime.of(2023, 4, 24, 20, 15);
+
+        assertThat(repoAppointments.scanConflicting("Oncology", doctor1.getId(), null, startsAt2, finishesAt2).getConflicting()).isEqualTo(1);
+        assertThat(repoAppointments.scanConflicting("Oncology", null, patient1.getId(), startsAt2, finishesAt2).getConflicting()).isEqualTo(1);
+        assertThat(repoAppointments.scanConflicting("Dermatology", doctor1.getId(), patient1.getId(), startsAt2, finishesAt2).getConflicting()).isEqualTo(1);
+        assertThat(repoAppointments.scanConflicting("Oncology", doctor2.getId(), patient2.getId(), startsAt2, finishesAt2).getConflicting()).isZero();
+        assertThat(repoAppointments.scanConflicting("Oncology", doctor1.getId(), patient1.getId(), finishesAt, finishesAt2).getConflicting()).isZero();
+
+        // Room, doctor and patient seeks on the finish each read the same row
+        assertThat(repoAppointments.scanConflicting("Dermatology", doctor1.getId(), patient1.getId(), startsAt2, finishesAt2).getScanned()).isEqualTo(3);
+        assertThat(repoAppointments.scanConflicting("Oncology", doctor2.getId(), patient2.getId(), startsAt2, finishesAt2).getScanned()).isZero();
+    }
+
+    @Test
+    void should_count_conflicting_slots_like_conflicts_with(){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Doctor doctor = entityManager.persist(new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Room room = entityManager.persist(new Room("Dermatology"));
+
+        // Every pair of quarter-hour boundaries between 19:00 and 20:30, including reversed ranges
+        LocalDateTime base = LocalDateTime.of(2023, 4, 24, 19, 0);
+        List<Appointment> candidates = new ArrayList<>();
+        for (int start = 0; start <= 6; start++){
+            for (int finish = 0; finish <= 6; finish++){
+                candidates.add(new Appointment(patient, doctor, room, base.plusMinutes(15L * start), base.plusMinutes(15L * finish)));
+            }
+        }
+
+        // Booked once for each range, by the doctor alone, so only the doctor branches can find it
+        for (Appointment booked : candidates){
+            Appointment persisted = entityManager.persist(new Appointment(null, doctor, null, booked.getStartsAt(), booked.getFinishesAt()));
+            entityManager.flush();
+
+            for (Appointment candidate : candidates){
+                long found = repoAppointments.scanConflicting("Oncology", doctor.getId(), null, candidate.getStartsAt(), candidate.getFinishesAt()).getConflicting();
+                assertThat(found > 0)
+                    .as("%s-%s against %s-%s", candidate.getStartsAt(), candidate.getFinishesAt(), booked.getStartsAt(), booked.getFinishesAt())
+                    .isEqualTo(candidate.conflictsWith(persisted));
+            }
+            entityManager.remove(persisted);
+            entityManager.flush();
+        }
+    }
+
+    @Test
+    void should_seek_resource_time_indexes_for_conflicts(){
+        String plan = (String) entityManager.getEntityManager()
+            .createNativeQuery("explain " + AppointmentRepository.CONFLICTING)
+            .setParameter("roomName", "Dermatology")
+            .setParameter("doctorId", 1L)
+            .setParameter("patientId", 1L)
+            .setParameter("startsAt", LocalDateTime.of(2023, 4, 24, 19, 0))
+            .setParameter("finishesAt", LocalDateTime.of(2023, 4, 24, 20, 0))
+            .getSingleResult();
+
+        // Each branch reads one index from the resource onwards, none of them the whole table
+        assertThat(plan).contains("IDX_APPOINTMENT_ROOM_STARTS", "IDX_APPOINTMENT_ROOM_FINISHES",
+            "IDX_APPOINTMENT_DOCTOR_STARTS", "IDX_APPOINTMENT_DOCTOR_FINISHES",
+            "IDX_APPOINTMENT_PATIENT_STARTS", "IDX_APPOINTMENT_PATIENT_FINISHES");
+        assertThat(plan).doesNotContainIgnoringCase("tableScan");
+    }
+
+    @Test
+    void should_filter_appointments_by_time_and_resource(){
+        Patient patient1 = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Mariela", "Eric", 42, "m.eric@email.com");
+        Doctor doctor1 = new Doctor ("Carina", "Zaray", 49, "c.zaray@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Reyna", "Cayetana", 28, "r.cayetana@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        entityManager.persist(patient1);
+        entityManager.persist(patient2);
+        entityManager.persist(doctor1);
+        entityManager.persist(doctor2);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment early = new Appointment(patient1, doctor1, room1, morning, morning.plusHours(1));
+        Appointment late = new Appointment(patient2, doctor1, room1, morning.plusHours(3), morning.plusHours(4));
+        Appointment elsewhere = new Appointment(patient1, doctor2, room2, morning.plusHours(1), morning.plusHours(2));
+        Appointment tomorrow = new Appointment(patient2, doctor2, room1, morning.plusDays(1), morning.plusDays(1).plusHours(1));
+        entityManager.persist(late);
+        entityManager.persist(early);
+        entityManager.persist(elsewhere);
+        entityManager.persist(tomorrow);
+
+        Sort byStart = Sort.by("startsAt", "id");
+        LocalDateTime day = morning.toLocalDate().atStartOfDay();
+
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(day, day.plusDays(1), "Dermatology", null, null, HOUR), byStart))
+            .containsExactly(early, late);
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(null, null, null, doctor2.getId(), null, HOUR), byStart))
+            .containsExactly(elsewhere, tomorrow);
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(null, null, null, null, patient1.getId(), HOUR), byStart))
+            .containsExactly(early, elsewhere);
+        // Running at some point of the window, even if started before it; one finishing at its start is not
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(morning.plusMinutes(30), morning.plusHours(1).plusMinutes(30), null, null, null, HOUR), byStart))
+            .containsExactly(early, elsewhere);
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(morning.plusHours(1), null, "Dermatology", doctor1.getId(), null, HOUR), byStart))
+            .containsExactly(late);
+        // Started before the window and still running in it, found as long as it is within the longest duration
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(morning.plusMinutes(59), morning.plusHours(1), "Dermatology", null, null, HOUR), byStart))
+            .containsExactly(early);
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(morning.plusMinutes(59), morning.plusHours(1), "Dermatology", null, null, Duration.ofMinutes(30)), byStart))
+            .isEmpty();
+    }
+
+    @Test
+    void should_page_appointments_by_start_and_id(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Carina", "Zaray", 49, "c.zaray@hospital.accwe");
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+
+        // Two rooms booked at the same times, so pages have to break ties on id
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+        List<Appointment> expected = new ArrayList<>();
+        for (int hour = 2; hour >= 0; hour--){
+            for (String roomName : new String[] { "Dermatology", "Oncology" }){
+                Room room = entityManager.find(Room.class, roomName);
+                if (room == null){
+                    room = entityManager.persist(new Room(roomName));
+                }
+                expected.add(entityManager.persist(new Appointment(patient, doctor, room, morning.plusHours(hour), morning.plusHours(hour + 1))));
+            }
+        }
+        expected.sort((a, b) -> a.getStartsAt().equals(b.getStartsAt()) ? Long.compare(a.getId(), b.getId()) : a.getStartsAt().compareTo(b.getStartsAt()));
+
+        Sort byStart = Sort.by("startsAt", "id");
+        List<Appointment> pages = new ArrayList<>();
+        List<Appointment> page = repoAppointments.findPage(Specification.where(null), byStart, 4);
+        assertThat(page).hasSize(4);
+        pages.addAll(page);
+        while (page.size() == 4){
+            Appointment last = page.get(page.size() - 1);
+            page = repoAppointments.findPage(AppointmentSpecifications.after(last.getStartsAt(), last.getId()), byStart, 4);
+            pages.addAll(page);
+        }
+
+        assertThat(pages).containsExactlyElementsOf(expected);
+        assertThat(repoAppointments.findPage(AppointmentSpecifications.inRoom("Oncology"), byStart, 10)).hasSize(3);
+    }
+
+    @Test
+    void should_list_appointments_with_people_in_one_statement(){
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+        for (int i = 0; i < 3; i++){
+            Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37 + i, "j.olaya@email.com"));
+            Doctor doctor = entityManager.persist(new Doctor("Carina", "Zaray", 49 + i, "c.zaray@hospital.accwe"));
+            Room room = entityManager.persist(new Room("Room " + i));
+            entityManager.persist(new Appointment(patient, doctor, room, morning.plusHours(i), morning.plusHours(i + 1)));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        Sort byStart = Sort.by("startsAt", "id");
+
+        statistics.clear();
+        assertThat(repoAppointments.findAll()).hasSize(3).allMatch(a -> a.getDoctor().getAge() >= 49);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        entityManager.clear();
+
+        statistics.clear();
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(morning.plusHours(1), null, null, null, null, HOUR), byStart)).hasSize(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        entityManager.clear();
+
+        statistics.clear();
+        assertThat(repoAppointments.findPage(Specification.where(null), byStart, 2)).hasSize(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        entityManager.clear();
+
+        statistics.clear();
+        List<AppointmentSummary> summaries = repoAppointments.findSummaries(Specification.where(null), byStart);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(summaries).extracting(AppointmentSummary::getRoomName).containsExactly("Room 0", "Room 1", "Room 2");
+        assertThat(summaries.get(0).getDoctorId()).isNotNull();
+        assertThat(summaries.get(0).getStartsAt()).isEqualTo(morning);
+        entityManager.clear();
+
+        // Only the asked columns are read; id and startsAt always are, for paging
+        List<AppointmentSummary> rooms = repoAppointments.findSummaryPage(Specification.where(null), byStart, 2, Collections.singleton("roomName"));
+        assertThat(rooms).extracting(AppointmentSummary::getRoomName).containsExactly("Room 0", "Room 1");
+        assertThat(rooms.get(1).getStartsAt()).isEqualTo(morning.plusHours(1));
+        assertThat(rooms.get(1).getDoctorId()).isNull();
+        assertThat(rooms.get(1).getFinishesAt()).isNull();
+    }
+
+    @Test
+    void should_declare_room_time_indexes(){
+        List<Object> indexes = entityManager.getEntityManager()
+            .createNativeQuery("select index_name from information_schema.indexes where table_name = 'APPOINTMENT'")
+            .getResultList();
+
+        assertThat(indexes).contains("IDX_APPOINTMENT_ROOM_STARTS", "IDX_APPOINTMENT_ROOM_FINISHES",
+            "IDX_APPOINTMENT_DOCTOR_STARTS", "IDX_APPOINTMENT_DOCTOR_FINISHES",
+            "IDX_APPOINTMENT_PATIENT_STARTS", "IDX_APPOINTMENT_PATIENT_FINISHES", "IDX_APPOINTMENT_STARTS",
+            "IDX_APPOINTMENT_LENGTH");
+    }
+
+    @Test
+    void should_read_the_longest_appointment_from_the_database(){
+        Room room = new Room("Dermatology");
+        entityManager.persist(room);
+        assertThat(repoAppointments.findLongest()).isEqualTo(Duration.ZERO);
+
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment brief = entityManager.persist(new Appointment(null, null, room, morning, morning.plusMinutes(30)));
+        entityManager.persist(new Appointment(null, null, room, morning.plusHours(1), morning.plusHours(3)));
+        entityManager.flush();
+        assertThat(repoAppointments.findLongest()).isEqualTo(Duration.ofHours(2));
+
+        // Moved times are measured again
+        brief.setFinishesAt(morning.plusHours(4));
+        entityManager.flush();
+        assertThat(repoAppointments.findLongest()).isEqualTo(Duration.ofHours(4));
+    }
+
+    @Test
+    void should_not_bound_the_look_back_while_a_row_is_unmeasured(){
+        Room room = new Room("Dermatology");
+        entityManager.persist(room);
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+        entityManager.persist(new Appointment(null, null, room, morning.plusHours(1), morning.plusHours(2)));
+
+        // Written by something other than this application, which knows nothing of the length column
+        entityManager.getEntityManager()
+            .createNativeQuery("insert into appointment (id, room_id, starts_at, finishes_at) values (9000, 'Dermatology', ?, ?)")
+            .setParameter(1, morning.minusDays(1))
+            .setParameter(2, morning.plusMinutes(30))
+            .executeUpdate();
+
+        assertThat(repoAppointments.findLongest()).isNull();
+        assertThat(repoAppointments.findAll(AppointmentSpecifications.filter(morning, morning.plusHours(3), "Dermatology", null, null,
+                repoAppointments.findLongest()), Sort.by("startsAt", "id")))
+            .extracting(Appointment::getId).contains(9000L);
+
+        appointmentLengths.measure();
+        entityManager.clear();
+        assertThat(repoAppointments.findLongest()).isEqualTo(Duration.ofHours(24).plusMinutes(30));
+    }
+
+
+    @Test
+    void should_insert_in_jdbc_batches_with_pooled_ids(){
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        for (int i = 0; i < 100; i++){
+            entityManager.persist(new Doctor("Perla", "Amalia", 24 + i % 40, "p.amalia@hospital.accwe"));
+        }
+        entityManager.flush();
+
+        // Two blocks of 50 ids and two batches of 50 inserts, instead of a round trip per row
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(100);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+        assertThat(repoDoctors.findAll()).extracting(Doctor::getId).doesNotHaveDuplicates().allMatch(id -> id > 0);
+    }
+
+    @Test
+    void should_book_by_reference_with_a_single_insert(){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        entityManager.persist(new Room("Dermatology"));
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        statistics.clear();
+        Appointment saved = repoAppointments.saveByReference(
+                new BookingRequest(patient.getId(), doctor.getId(), "Dermatology", morning, morning.plusHours(1)).toAppointment());
+
+        // No patient, doctor or room is read or written, only the appointment row
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getEntityFetchCount()).isZero();
+        assertThat(saved.getId()).isPositive();
+        entityManager.clear();
+
+        Appointment found = repoAppointments.findById(saved.getId()).get();
+        assertThat(found.getDoctor().getEmail()).isEqualTo("p.amalia@hospital.accwe");
+        assertThat(found.getRoom().getRoomName()).isEqualTo("Dermatology");
+        assertThat(repoPatients.count()).isEqualTo(1);
+        assertThat(repoRooms.count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_book_an_unknown_reference(){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        entityManager.persist(new Room("Dermatology"));
+        entityManager.flush();
+        entityManager.clear();
+
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment unknownDoctor = new BookingRequest(patient.getId(), patient.getId() + 1000, "Dermatology", morning, morning.plusHours(1)).toAppointment();
+
+        assertThatThrownBy(() -> repoAppointments.saveByReference(unknownDoctor)).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
 }
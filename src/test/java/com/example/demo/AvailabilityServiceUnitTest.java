@@ -0,0 +1,118 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.AvailableSlot;
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.AvailabilityService;
+
+class AvailabilityServiceUnitTest {
+
+    private AppointmentIndex index;
+    private AvailabilityService availability;
+
+    private Patient patient;
+    private Doctor doctor;
+
+    private DateTimeFormatter formatter;
+
+    @BeforeEach
+    void setUp(){
+        index = new AppointmentIndex();
+        availability = new AvailabilityService();
+        ReflectionTestUtils.setField(availability, "appointmentIndex", index);
+
+        patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        patient.setId(1);
+        doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(1);
+
+        formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+    }
+
+    @Test
+    void shouldIntersectDoctorPatientAndRoom(){
+        // Doctor busy 09:00-10:00 elsewhere, patient busy 10:30-11:00 elsewhere, room busy 11:30-12:00 with others
+        book(1, doctor, other(), "Oncology", "09:00 24/04/2023", "10:00 24/04/2023");
+        book(2, otherDoctor(), patient, "Urology", "10:30 24/04/2023", "11:00 24/04/2023");
+        book(3, otherDoctor(), other(), "Dermatology", "11:30 24/04/2023", "12:00 24/04/2023");
+
+        List<AvailableSlot> slots = availability.find(1L, 1L, Collections.singletonList("Dermatology"),
+                time("09:00 24/04/2023"), time("13:00 24/04/2023"), Duration.ofMinutes(30), 10);
+
+        assertThat(slots).extracting(AvailableSlot::getStartsAt)
+            .containsExactly(time("10:00 24/04/2023"), time("11:00 24/04/2023"), time("12:00 24/04/2023"));
+        assertThat(slots).extracting(AvailableSlot::getFinishesAt)
+            .containsExactly(time("10:30 24/04/2023"), time("11:30 24/04/2023"), time("13:00 24/04/2023"));
+    }
+
+    @Test
+    void shouldOfferAnyOfTheRooms(){
+        book(1, otherDoctor(), other(), "Dermatology", "09:00 24/04/2023", "10:00 24/04/2023");
+        book(2, otherDoctor(), other(), "Dermatology 2", "10:00 24/04/2023", "11:00 24/04/2023");
+
+        List<AvailableSlot> slots = availability.find(1L, 1L, Arrays.asList("Dermatology", "Dermatology 2"),
+                time("09:00 24/04/2023"), time("11:00 24/04/2023"), Duration.ofMinutes(60), 10);
+
+        assertThat(slots).extracting(AvailableSlot::getRoomName).containsExactly("Dermatology 2", "Dermatology");
+        assertThat(slots).extracting(AvailableSlot::getStartsAt).containsExactly(time("09:00 24/04/2023"), time("10:00 24/04/2023"));
+    }
+
+    @Test
+    void shouldSkipWindowsShorterThanDuration(){
+        book(1, doctor, other(), "Oncology", "09:20 24/04/2023", "10:00 24/04/2023");
+
+        List<AvailableSlot> slots = availability.find(1L, null, Collections.singletonList("Dermatology"),
+                time("09:00 24/04/2023"), time("11:00 24/04/2023"), Duration.ofMinutes(30), 1);
+
+        assertThat(slots).hasSize(1);
+        assertThat(slots.get(0).getStartsAt()).isEqualTo(time("10:00 24/04/2023"));
+    }
+
+    @Test
+    void shouldBookEveryAvailableSlotWithoutConflict(){
+        book(1, doctor, other(), "Oncology", "09:10 24/04/2023", "09:50 24/04/2023");
+        book(2, otherDoctor(), patient, "Urology", "09:30 24/04/2023", "10:20 24/04/2023");
+        book(3, otherDoctor(), other(), "Dermatology", "10:40 24/04/2023", "11:10 24/04/2023");
+
+        for (AvailableSlot slot : availability.find(1L, 1L, Collections.singletonList("Dermatology"),
+                time("09:00 24/04/2023"), time("12:00 24/04/2023"), Duration.ofMinutes(5), 10)){
+            Appointment candidate = new Appointment(patient, doctor, new Room(slot.getRoomName()), slot.getStartsAt(), slot.getFinishesAt());
+            assertThat(index.conflicts(candidate)).isFalse();
+        }
+    }
+
+    private Patient other(){
+        Patient other = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        other.setId(2);
+        return other;
+    }
+
+    private Doctor otherDoctor(){
+        Doctor other = new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        other.setId(2);
+        return other;
+    }
+
+    private void book(long id, Doctor doctor, Patient patient, String roomName, String startsAt, String finishesAt){
+        Appointment appointment = new Appointment(patient, doctor, new Room(roomName), time(startsAt), time(finishesAt));
+        appointment.setId(id);
+        index.add(appointment);
+    }
+
+    private LocalDateTime time(String value){
+        return LocalDateTime.parse(value, formatter);
+    }
+}
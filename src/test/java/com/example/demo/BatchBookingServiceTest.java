@@ -0,0 +1,136 @@
+package com.example.demo;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.dto.BookingResult;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.BatchBookingService;
+import com.example.demo.services.BookingLocks;
+import com.example.demo.services.RoomOccupancy;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({BatchBookingService.class, AppointmentIndex.class, RoomOccupancy.class, BookingLocks.class})
+class BatchBookingServiceTest {
+
+    private static final LocalDateTime MORNING = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    BatchBookingService batchBookingService;
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    @Autowired
+    AppointmentRepository repoAppointments;
+
+    @Autowired
+    PatientRepository repoPatients;
+
+    // The index outlives the rolled back transactions of the other tests
+    @BeforeEach
+    void reloadIndex(){
+        appointmentIndex.load();
+    }
+
+    private Appointment appointment(Patient patient, Doctor doctor, String roomName, int fromMinute, int toMinute){
+        return new Appointment(patient, doctor, new Room(roomName), MORNING.plusMinutes(fromMinute), MORNING.plusMinutes(toMinute));
+    }
+
+    private Patient patient(){
+        return new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+    }
+
+    private Doctor doctor(){
+        return new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+    }
+
+    @Test
+    void should_book_the_earliest_of_overlapping_appointments(){
+        List<BookingResult> results = batchBookingService.book(Arrays.asList(
+                appointment(patient(), doctor(), "Dermatology", 30, 90),
+                appointment(patient(), doctor(), "Dermatology", 0, 60),
+                appointment(patient(), doctor(), "Dermatology", 60, 120)));
+
+        assertThat(results).extracting(BookingResult::getStatus).containsExactly(
+                BookingResult.Status.CONFLICT, BookingResult.Status.BOOKED, BookingResult.Status.BOOKED);
+        assertThat(results).extracting(BookingResult::getIndex).containsExactly(0, 1, 2);
+        assertThat(repoAppointments.findAll()).hasSize(2);
+        assertThat(appointmentIndex.size()).isEqualTo(2);
+    }
+
+    @Test
+    void should_share_one_room_between_appointments_of_the_batch(){
+        List<BookingResult> results = batchBookingService.book(Arrays.asList(
+                appointment(patient(), doctor(), "Cardiology", 0, 30),
+                appointment(patient(), doctor(), "Cardiology", 30, 60)));
+
+        assertThat(results).extracting(BookingResult::getStatus).containsOnly(BookingResult.Status.BOOKED);
+        assertThat(entityManager.find(Room.class, "Cardiology")).isNotNull();
+        assertThat(repoAppointments.findAll()).extracting(a -> a.getRoom().getRoomName()).containsOnly("Cardiology");
+    }
+
+    @Test
+    void should_not_book_over_existing_appointments(){
+        Doctor doctor = entityManager.persist(doctor());
+        Appointment existing = appointment(patient(), doctor, "Oncology", 0, 60);
+        entityManager.persist(existing);
+        entityManager.flush();
+
+        List<BookingResult> results = batchBookingService.book(Arrays.asList(
+                appointment(patient(), doctor(), "Oncology", 30, 90),
+                appointment(patient(), doctor, "Urology", 0, 60),
+                appointment(patient(), doctor(), "Urology", 60, 120)));
+
+        assertThat(results).extracting(BookingResult::getStatus).containsExactly(
+                BookingResult.Status.CONFLICT, BookingResult.Status.CONFLICT, BookingResult.Status.BOOKED);
+    }
+
+    @Test
+    void should_not_create_the_new_patient_of_an_invalid_appointment(){
+        Doctor unknown = doctor();
+        unknown.setId(Long.MAX_VALUE);
+
+        List<BookingResult> results = batchBookingService.book(Arrays.asList(
+                appointment(patient(), unknown, "Dermatology", 0, 60)));
+        entityManager.flush();
+
+        assertThat(results).extracting(BookingResult::getStatus).containsExactly(BookingResult.Status.INVALID);
+        assertThat(repoPatients.count()).isZero();
+        assertThat(repoAppointments.count()).isZero();
+    }
+
+    @Test
+    void should_reject_invalid_appointments(){
+        Doctor missing = doctor();
+        missing.setId(999);
+
+        List<BookingResult> results = batchBookingService.book(Arrays.asList(
+                appointment(patient(), doctor(), "Dermatology", 60, 0),
+                appointment(patient(), doctor(), "Dermatology", 60, 60),
+                appointment(patient(), missing, "Dermatology", 0, 60)));
+
+        assertThat(results).extracting(BookingResult::getStatus).containsOnly(BookingResult.Status.INVALID);
+        assertThat(repoAppointments.findAll()).isEmpty();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class BookingConcurrencyTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingConcurrencyTest.class);
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    // Deleting appointments leaves their people and rooms, so those go too
+    @AfterEach
+    void deleteAppointments(){
+        restTemplate.delete("/api/appointments");
+        restTemplate.delete("/api/doctors");
+        restTemplate.delete("/api/patients");
+        restTemplate.delete("/api/rooms");
+    }
+
+    @Test
+    void shouldBookOverlappingSlotsOfOneRoomOnlyOnce() throws Exception {
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+
+        // Every request overlaps every other one: each starts a minute later than the previous, all within the hour
+        List<Callable<HttpStatus>> bookings = new ArrayList<>();
+        for (int i = 0; i < THREADS * 3; i++){
+            Appointment appointment = new Appointment(
+                    new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                    new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"),
+                    new Room("Dermatology"), startsAt.plusMinutes(i), startsAt.plusMinutes(60L + i));
+            bookings.add(() -> book(appointment));
+        }
+
+        List<HttpStatus> statuses = runConcurrently(bookings);
+
+        assertThat(statuses).filteredOn(HttpStatus.OK::equals).hasSize(1);
+        assertThat(statuses).filteredOn(HttpStatus.NOT_ACCEPTABLE::equals).hasSize(bookings.size() - 1);
+        assertThat(appointmentRepository.findOverlapping("Dermatology", startsAt, startsAt.plusMinutes(60L + bookings.size()))).hasSize(1);
+    }
+
+    @Test
+    void shouldBookManyRoomsInParallel() throws Exception {
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+
+        List<Callable<HttpStatus>> bookings = new ArrayList<>();
+        for (int i = 0; i < THREADS * 16; i++){
+            Appointment appointment = new Appointment(
+                    new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                    new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"),
+                    new Room("Room " + i), startsAt, startsAt.plusHours(1));
+            bookings.add(() -> book(appointment));
+        }
+
+        long started = System.nanoTime();
+        List<HttpStatus> statuses = runConcurrently(bookings);
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        log.info("Booked {} rooms with {} threads in {} ms ({} bookings/s)",
+                bookings.size(), THREADS, elapsedMillis, bookings.size() * 1000L / elapsedMillis);
+
+        assertThat(statuses).containsOnly(HttpStatus.OK);
+        assertThat(appointmentRepository.count()).isEqualTo(bookings.size());
+    }
+
+    private HttpStatus book(Appointment appointment) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<String> request = new HttpEntity<>(objectMapper.writeValueAsString(appointment), headers);
+        return restTemplate.postForEntity("/api/appointment", request, String.class).getStatusCode();
+    }
+
+    private List<HttpStatus> runConcurrently(List<Callable<HttpStatus>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<HttpStatus>> futures = new ArrayList<>();
+            for (Callable<HttpStatus> task : tasks){
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+
+            List<HttpStatus> statuses = new ArrayList<>();
+            for (Future<HttpStatus> future : futures){
+                statuses.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return statuses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
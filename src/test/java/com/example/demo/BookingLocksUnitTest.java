@@ -0,0 +1,73 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.BookingLocks;
+
+class BookingLocksUnitTest {
+
+    private BookingLocks locks;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp(){
+        locks = new BookingLocks(64);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown(){
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldWaitForBookingsInProgressBeforeRebuilding() throws Exception {
+        BookingLocks.Held booking = locks.lock(appointment("Dermatology"));
+        Future<?> rebuild = executor.submit(() -> locks.exclusive().close());
+
+        assertThat(blocked(rebuild)).isTrue();
+        booking.close();
+        rebuild.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void shouldKeepBookingsOutWhileRebuilding() throws Exception {
+        BookingLocks.Held rebuild = locks.exclusive();
+        Future<?> booking = executor.submit(() -> locks.lock(appointment("Oncology")).close());
+        Future<?> delete = executor.submit(() -> locks.shared().close());
+
+        assertThat(blocked(booking)).isTrue();
+        assertThat(blocked(delete)).isTrue();
+        rebuild.close();
+        booking.get(5, TimeUnit.SECONDS);
+        delete.get(5, TimeUnit.SECONDS);
+    }
+
+    private static boolean blocked(Future<?> future) throws Exception {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            return false;
+        } catch (TimeoutException e){
+            return true;
+        }
+    }
+
+    private static Appointment appointment(String roomName){
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+        return new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room(roomName), startsAt, startsAt.plusHours(1));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.demo;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.dto.DeletedRows;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.BookingLocks;
+import com.example.demo.services.BulkDeleteService;
+import com.example.demo.services.RoomOccupancy;
+
+
+@DataJpaTest(properties = "deletes.chunk-size=2")
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({BulkDeleteService.class, AppointmentIndex.class, RoomOccupancy.class, BookingLocks.class})
+class BulkDeleteServiceTest {
+
+    private static final LocalDateTime MORNING = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    BulkDeleteService bulkDeleteService;
+
+    @Autowired
+    AppointmentIndex appointmentIndex;
+
+    @Autowired
+    AppointmentRepository repoAppointments;
+
+    @Autowired
+    DoctorRepository repoDoctors;
+
+    @Autowired
+    PatientRepository repoPatients;
+
+    @Autowired
+    RoomRepository repoRooms;
+
+    // Five doctors, the first two with an appointment each
+    private void persistDoctors(){
+        Room room = entityManager.persist(new Room("Dermatology"));
+        for (int i = 0; i < 5; i++){
+            Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24 + i, "p.amalia@hospital.accwe"));
+            if (i < 2){
+                Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+                entityManager.persist(new Appointment(patient, doctor, room, MORNING.plusHours(i), MORNING.plusHours(i + 1)));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        appointmentIndex.load();
+    }
+
+    @Test
+    void should_delete_doctors_in_chunks_with_their_appointments(){
+        persistDoctors();
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        DeletedRows deleted = bulkDeleteService.deleteAllDoctors();
+
+        assertThat(deleted.getDoctors()).isEqualTo(5);
+        assertThat(deleted.getAppointments()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(repoDoctors.count()).isZero();
+        assertThat(repoAppointments.count()).isZero();
+        assertThat(repoPatients.count()).isEqualTo(2);
+        assertThat(appointmentIndex.slots()).isEmpty();
+    }
+
+    @Test
+    void should_delete_appointments_only(){
+        persistDoctors();
+
+        DeletedRows deleted = bulkDeleteService.deleteAllAppointments();
+
+        assertThat(deleted.getAppointments()).isEqualTo(2);
+        assertThat(repoAppointments.count()).isZero();
+        assertThat(repoDoctors.count()).isEqualTo(5);
+        assertThat(repoRooms.count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_delete_rooms_by_name_range(){
+        persistDoctors();
+        for (String name : new String[] {"Cardiology", "Oncology", "Radiology"}){
+            entityManager.persist(new Room(name));
+        }
+        entityManager.flush();
+
+        DeletedRows deleted = bulkDeleteService.deleteAllRooms();
+
+        assertThat(deleted.getRooms()).isEqualTo(4);
+        assertThat(deleted.getAppointments()).isEqualTo(2);
+        assertThat(repoRooms.count()).isZero();
+    }
+}
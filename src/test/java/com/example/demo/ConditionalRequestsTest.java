@@ -0,0 +1,45 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalRequestsTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void should_answer_unchanged_polls_without_a_transaction() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String etag = mockMvc.perform(get("/api/rooms"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).isNotNull();
+
+        long transactions = statistics.getTransactionCount();
+        mockMvc.perform(get("/api/rooms").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        assertThat(statistics.getTransactionCount()).isEqualTo(transactions);
+
+        // A changed copy still goes through the handler and its transaction
+        mockMvc.perform(get("/api/rooms").header("If-None-Match", "\"0-0\""));
+        assertThat(statistics.getTransactionCount()).isEqualTo(transactions + 1);
+    }
+
+}
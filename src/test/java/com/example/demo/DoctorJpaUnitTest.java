@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
@@ -59,6 +60,21 @@ class DoctorJpaUnitTest {
         
     }
 
+    @Test
+    void should_find_doctors_after_id(){
+
+        Doctor doc1 = new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe");
+        Doctor doc2 = new Doctor("Cornelio","Andrea", 59, "c.andrea@hospital.accwe");
+        Doctor doc3 = new Doctor("Clarisa","Julia", 29, "c.julia@hospital.accwe");
+
+        entityManager.persist(doc1);
+        entityManager.persist(doc2);
+        entityManager.persist(doc3);
+
+        assertThat(repository.findByIdGreaterThanOrderById(0, PageRequest.of(0, 2))).containsExactly(doc1, doc2);
+        assertThat(repository.findByIdGreaterThanOrderById(doc2.getId(), PageRequest.of(0, 2))).containsExactly(doc3);
+    }
+
     @Test
     void should_find_doctor_by_id(){
         Doctor doc1 = new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe");
@@ -102,5 +118,21 @@ class DoctorJpaUnitTest {
         repository.deleteAll();
         assertThat(repository.findAll()).isEmpty();
     }
+
+    @Test
+    void should_delete_doctor_row_and_count_it(){
+        Doctor doc1 = new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe");
+        Doctor doc2 = new Doctor("Cornelio","Andrea", 59, "c.andrea@hospital.accwe");
+
+        entityManager.persist(doc1);
+        entityManager.persist(doc2);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(repository.deleteRowById(doc2.getId())).isEqualTo(1);
+        assertThat(repository.deleteRowById(doc2.getId())).isZero();
+        assertThat(repository.existsById(doc2.getId())).isFalse();
+        assertThat(repository.existsById(doc1.getId())).isTrue();
+    }
     
 }
@@ -2,22 +2,31 @@
 package com.example.demo;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.*;
 
@@ -25,6 +34,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.LinkedMultiValueMap;
@@ -33,14 +45,36 @@ import org.springframework.util.MultiValueMap;
 import com.example.demo.controllers.*;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.dto.FreeSlot;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.ChangeWatermarks;
+import com.example.demo.services.ExportService;
+import com.example.demo.services.ImportService;
+import com.example.demo.services.BulkDeleteService;
+import com.example.demo.dto.DeletedRows;
+import com.example.demo.dto.ImportReport;
+import com.example.demo.services.RoomOccupancy;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @WebMvcTest(DoctorController.class)
+@Import(ChangeWatermarks.class)
 class DoctorControllerUnitTest{
 
     @MockBean
     private DoctorRepository doctorRepository;
 
+    @MockBean
+    private ExportService exportService;
+
+    @MockBean
+    private ImportService importService;
+
+    @MockBean
+    private BulkDeleteService bulkDeleteService;
+
+    @MockBean
+    private AppointmentIndex appointmentIndex;
+
     @Autowired 
     private MockMvc mockMvc;
 
@@ -113,12 +147,28 @@ class DoctorControllerUnitTest{
         Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
         Optional<Doctor> optionalDoctor = Optional.of(doctor);
         assertThat(optionalDoctor).isPresent();
-        when(doctorRepository.findById(doctorIdToDelete)).thenReturn(optionalDoctor);
-        doNothing().when(doctorRepository).deleteById(doctorIdToDelete);
+        when(doctorRepository.deleteRowById(doctorIdToDelete)).thenReturn(1);
 
         mockMvc.perform(delete("/api/doctors/{id}", doctorIdToDelete)).andExpect(status().isOk());
 
-        verify(doctorRepository, times(1)).deleteById(doctorIdToDelete);
+        verify(doctorRepository, times(1)).deleteRowById(doctorIdToDelete);
+        verify(doctorRepository, never()).findById(any());
+    }
+
+    @Test
+    void shouldNotDeleteDoctorWithAppointments() throws Exception {
+        when(doctorRepository.deleteRowById(3)).thenThrow(new DataIntegrityViolationException("appointment_doctor_fk"));
+
+        mockMvc.perform(delete("/api/doctors/{id}", 3)).andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldTellWhetherDoctorExists() throws Exception {
+        when(doctorRepository.existsById(3L)).thenReturn(true);
+
+        mockMvc.perform(head("/api/doctors/{id}", 3)).andExpect(status().isOk());
+        mockMvc.perform(head("/api/doctors/{id}", 4)).andExpect(status().isNotFound());
+        verify(doctorRepository, never()).findById(any());
     }
 
     @Test
@@ -130,23 +180,94 @@ class DoctorControllerUnitTest{
         mockMvc.perform(delete("/api/doctors/{id}", doctorIdToDelete)).andExpect(status().isNotFound());
     }
 
+    @Test
+    void shouldGetDoctorFreeSlots() throws Exception {
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        when(doctorRepository.findById(1L)).thenReturn(Optional.of(doctor));
+        when(appointmentIndex.freeDoctorSlots(anyLong(), any(), any(), any(), anyInt()))
+            .thenReturn(Arrays.asList(new FreeSlot(startsAt, startsAt.plusHours(1))));
+
+        mockMvc.perform(get("/api/doctors/1/free-slots")
+                .param("from", "09:00 24/04/2023").param("to", "13:00 24/04/2023").param("duration", "30"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].startsAt").value("09:00 24/04/2023"))
+                .andExpect(jsonPath("$[0].finishesAt").value("10:00 24/04/2023"));
+    }
+
+    @Test
+    void shouldNoGetFreeSlotsOfUnknownDoctor() throws Exception {
+        mockMvc.perform(get("/api/doctors/1/free-slots")
+                .param("from", "09:00 24/04/2023").param("to", "13:00 24/04/2023").param("duration", "30"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldGetDoctorsPage() throws Exception {
+        Doctor doctor1 = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Doctor doctor3 = new Doctor("Clarisa", "Julia", 29, "c.julia@hospital.accwe");
+        doctor1.setId(1);
+        doctor2.setId(2);
+        doctor3.setId(3);
+
+        List<Doctor> doctors = new ArrayList<Doctor>();
+        doctors.add(doctor1);
+        doctors.add(doctor2);
+        doctors.add(doctor3);
+
+        // Asked for one more than the limit, so there is a next page after doctor 2
+        when(doctorRepository.findByIdGreaterThanOrderById(0L, PageRequest.of(0, 3))).thenReturn(doctors);
+        mockMvc.perform(get("/api/doctors").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().string("Link", "<http://localhost/api/doctors?after=Mg&limit=2>; rel=\"next\""));
+
+        when(doctorRepository.findByIdGreaterThanOrderById(2L, PageRequest.of(0, 3))).thenReturn(doctors.subList(2, 3));
+        mockMvc.perform(get("/api/doctors").param("limit", "2").param("after", "Mg"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void shouldNoGetDoctorsPageWithBadCursor() throws Exception {
+        mockMvc.perform(get("/api/doctors").param("after", "not a cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldDeleteAllDoctors() throws Exception {
-        doNothing().when(doctorRepository).deleteAll();
+        when(bulkDeleteService.deleteAllDoctors()).thenReturn(new DeletedRows(4, 3, 0, 0));
 
-        mockMvc.perform(delete("/api/doctors")).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/doctors"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.doctors").value(3))
+                .andExpect(jsonPath("$.appointments").value(4));
 
-        verify(doctorRepository, times(1)).deleteAll();
+        verify(bulkDeleteService, times(1)).deleteAllDoctors();
+        verify(doctorRepository, never()).deleteAll();
     }
 }
 
 
 @WebMvcTest(PatientController.class)
+@Import(ChangeWatermarks.class)
 class PatientControllerUnitTest{
 
     @MockBean
     private PatientRepository patientRepository;
 
+    @MockBean
+    private ExportService exportService;
+
+    @MockBean
+    private ImportService importService;
+
+    @MockBean
+    private BulkDeleteService bulkDeleteService;
+
     @Autowired 
     private MockMvc mockMvc;
 
@@ -219,12 +340,11 @@ class PatientControllerUnitTest{
         Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
         Optional<Patient> optionalPatient = Optional.of(patient);
         assertThat(optionalPatient).isPresent();
-        when(patientRepository.findById(patientIdToDelete)).thenReturn(optionalPatient);
-        doNothing().when(patientRepository).deleteById(patientIdToDelete);
+        when(patientRepository.deleteRowById(patientIdToDelete)).thenReturn(1);
 
         mockMvc.perform(delete("/api/patients/{id}",patientIdToDelete)).andExpect(status().isOk());
 
-        verify(patientRepository, times(1)).deleteById(patientIdToDelete);
+        verify(patientRepository, times(1)).deleteRowById(patientIdToDelete);
     }
 
     @Test
@@ -236,22 +356,84 @@ class PatientControllerUnitTest{
         mockMvc.perform(delete("/api/patients/{id}", patientIdToDelete)).andExpect(status().isNotFound());
     }
 
+    @Test
+    void shouldExportPatients() throws Exception {
+        mockMvc.perform(get("/api/patients/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json;charset=UTF-8"));
+
+        verify(exportService).exportPatients(any(), eq(false));
+    }
+
+    @Test
+    void shouldImportPatientsFromCsv() throws Exception {
+        ImportReport report = new ImportReport(2, 1, 10, Arrays.asList(new ImportReport.Rejection(3, "invalid age")));
+        when(importService.importPatients(any(), eq(true))).thenReturn(report);
+
+        mockMvc.perform(post("/api/patients/import").contentType("text/csv")
+                .content("firstName,lastName,age,email\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rowsPerSecond").value(200))
+                .andExpect(jsonPath("$.rejections[0].row").value(3));
+    }
+
+    @Test
+    void shouldNotImportPatientsFromJson() throws Exception {
+        mockMvc.perform(post("/api/patients/import").contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    void shouldGetPatientsWithFields() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        patient.setId(1);
+
+        List<Patient> patients = new ArrayList<Patient>();
+        patients.add(patient);
+
+        when(patientRepository.findAll()).thenReturn(patients);
+        mockMvc.perform(get("/api/patients").param("fields", "id,email"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].email").value("j.olaya@email.com"))
+                .andExpect(jsonPath("$[0].firstName").doesNotExist());
+    }
+
+    @Test
+    void shouldNoGetPatientWithUnknownFields() throws Exception {
+        mockMvc.perform(get("/api/patients/1").param("fields", "password"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldDeleteAllDoctors() throws Exception {
-        doNothing().when(patientRepository).deleteAll();
+        when(bulkDeleteService.deleteAllPatients()).thenReturn(new DeletedRows(0, 0, 3, 0));
 
-        mockMvc.perform(delete("/api/patients")).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/patients"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients").value(3));
 
-        verify(patientRepository, times(1)).deleteAll();
+        verify(bulkDeleteService, times(1)).deleteAllPatients();
     }
 }
 
 @WebMvcTest(RoomController.class)
+@Import(ChangeWatermarks.class)
 class RoomControllerUnitTest{
 
     @MockBean
     private RoomRepository roomRepository;
 
+    @MockBean
+    private AppointmentIndex appointmentIndex;
+
+    @MockBean
+    private RoomOccupancy roomOccupancy;
+
+    @MockBean
+    private BulkDeleteService bulkDeleteService;
+
     @Autowired 
     private MockMvc mockMvc;
 
@@ -323,12 +505,20 @@ class RoomControllerUnitTest{
         Room room = new Room("Gynecology");
         Optional<Room> optionalRoom = Optional.of(room);
         assertThat(optionalRoom).isPresent();
-        when(roomRepository.findByRoomName(room.getRoomName())).thenReturn(optionalRoom);
-        doNothing().when(roomRepository).deleteByRoomName(room.getRoomName());
+        when(roomRepository.deleteRowByRoomName(room.getRoomName())).thenReturn(1);
 
         mockMvc.perform(delete("/api/rooms/{roomName}",room.getRoomName())).andExpect(status().isOk());
 
-        verify(roomRepository, times(1)).deleteByRoomName(room.getRoomName());
+        verify(roomRepository, times(1)).deleteRowByRoomName(room.getRoomName());
+    }
+
+    @Test
+    void shouldTellWhetherRoomExists() throws Exception {
+        when(roomRepository.existsByRoomName("Gynecology")).thenReturn(true);
+
+        mockMvc.perform(head("/api/rooms/{roomName}", "Gynecology")).andExpect(status().isOk());
+        mockMvc.perform(head("/api/rooms/{roomName}", "Oncology")).andExpect(status().isNotFound());
+        verify(roomRepository, never()).findByRoomName(any());
     }
 
     @Test
@@ -340,12 +530,90 @@ class RoomControllerUnitTest{
         mockMvc.perform(delete("/api/rooms/{roomName}", roomNameToDelete)).andExpect(status().isNotFound());
     }
 
+    @Test
+    void shouldGetRoomFreeSlots() throws Exception {
+        Room room = new Room("Dermatology");
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+        when(appointmentIndex.freeRoomSlots(any(), any(), any(), any(), anyInt()))
+            .thenReturn(Arrays.asList(new FreeSlot(startsAt, startsAt.plusMinutes(30))));
+
+        mockMvc.perform(get("/api/rooms/Dermatology/free-slots")
+                .param("from", "09:00 24/04/2023").param("to", "13:00 24/04/2023").param("duration", "30").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void shouldNoGetFreeSlotsForReversedRange() throws Exception {
+        mockMvc.perform(get("/api/rooms/Dermatology/free-slots")
+                .param("from", "13:00 24/04/2023").param("to", "09:00 24/04/2023").param("duration", "30"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldAnswerNotModifiedForUnchangedRoom() throws Exception {
+        when(roomRepository.findByRoomName("Gynecology")).thenReturn(Optional.of(new Room("Gynecology")));
+
+        String etag = mockMvc.perform(get("/api/rooms/Gynecology"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/rooms/Gynecology").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        verify(roomRepository, times(1)).findByRoomName("Gynecology");
+
+        mockMvc.perform(post("/api/room").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Room("Dermatology"))))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/rooms/Gynecology").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldGetRoomGrid() throws Exception {
+        Room room = new Room("Dermatology");
+        long[] busy = new long[5];
+        busy[1] = 1L << 44;
+
+        Map<LocalDate, long[]> grid = new LinkedHashMap<>();
+        grid.put(LocalDate.of(2023, 4, 24), busy);
+        grid.put(LocalDate.of(2023, 4, 25), new long[5]);
+
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+        when(roomOccupancy.grid("Dermatology", LocalDate.of(2023, 4, 24), 2)).thenReturn(grid);
+
+        // Cell 108 is 09:00-09:05
+        mockMvc.perform(get("/api/rooms/Dermatology/grid").param("from", "24/04/2023").param("days", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].date").value("24/04/2023"))
+                .andExpect(jsonPath("$[0].cells").value(new String(new char[108]).replace('\0', '0') + "1" + new String(new char[179]).replace('\0', '0')))
+                .andExpect(jsonPath("$[1].cells").value(new String(new char[288]).replace('\0', '0')));
+    }
+
+    @Test
+    void shouldGetRoomsPage() throws Exception {
+        List<Room> rooms = new ArrayList<Room>();
+        rooms.add(new Room("Oncology"));
+        rooms.add(new Room("Urology"));
+
+        when(roomRepository.findByRoomNameGreaterThanOrderByRoomName("Dermatology", PageRequest.of(0, 51))).thenReturn(rooms);
+        mockMvc.perform(get("/api/rooms").param("after", Base64.getUrlEncoder().withoutPadding().encodeToString("Dermatology".getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].roomName").value("Oncology"))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
     @Test
     void shouldDeleteAllRooms() throws Exception {
-        doNothing().when(roomRepository).deleteAll();
+        when(bulkDeleteService.deleteAllRooms()).thenReturn(new DeletedRows(2, 0, 0, 1));
 
-        mockMvc.perform(delete("/api/rooms")).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/rooms"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rooms").value(1));
 
-        verify(roomRepository, times(1)).deleteAll();
+        verify(bulkDeleteService, times(1)).deleteAllRooms();
     }
 }
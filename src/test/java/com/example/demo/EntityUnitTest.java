@@ -212,6 +212,49 @@ class EntityUnitTest {
         assertThat(a2.overlaps(a3)).isFalse();
     }
 
+    @Test
+    void conflictsWithShouldReturnTrueWhenSameDoctorInAnotherRoom() {
+        Patient p2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        d1.setId(1);
+
+        LocalDateTime startsAt = LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:00 24/04/2023", formatter);
+
+        a1 = new Appointment(p1, d1, r1, startsAt, finishesAt);
+        a2 = new Appointment(p2, d1, new Room("Oncology"), startsAt, finishesAt);
+
+        assertThat(a1.overlaps(a2)).isFalse();
+        assertThat(a1.conflictsWith(a2)).isTrue();
+    }
+
+    @Test
+    void conflictsWithShouldReturnTrueWhenSamePatientInAnotherRoom() {
+        Doctor d2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        p1.setId(1);
+
+        LocalDateTime startsAt = LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:00 24/04/2023", formatter);
+        LocalDateTime startsAt2 = LocalDateTime.parse("19:45 24/04/2023", formatter);
+        LocalDateTime finishesAt2 = LocalDateTime.parse("20:15 24/04/2023", formatter);
+
+        a1 = new Appointment(p1, d1, r1, startsAt, finishesAt);
+        a2 = new Appointment(p1, d2, new Room("Oncology"), startsAt2, finishesAt2);
+
+        assertThat(a1.conflictsWith(a2)).isTrue();
+    }
+
+    @Test
+    void conflictsWithShouldReturnFalseForUnsavedPeopleInAnotherRoom() {
+        LocalDateTime startsAt = LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:00 24/04/2023", formatter);
+
+        a1 = new Appointment(p1, d1, r1, startsAt, finishesAt);
+        a2 = new Appointment(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"),
+                new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"), new Room("Oncology"), startsAt, finishesAt);
+
+        assertThat(a1.conflictsWith(a2)).isFalse();
+    }
+
     @Test
     void shouldSetDoctorOnAppoitment() {
         LocalDateTime startsAt = LocalDateTime.parse("19:30 24/04/2023", formatter);
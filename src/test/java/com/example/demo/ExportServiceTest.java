@@ -0,0 +1,82 @@
+package com.example.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.ExportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+@DataJpaTest
+@AutoConfigureJson
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({ExportService.class, JacksonConfiguration.class})
+class ExportServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void should_export_appointments_as_json_array() throws Exception {
+        Room room = entityManager.persist(new Room("Dermatology"));
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        for (int i = 0; i < 3; i++){
+            Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37 + i, "j.olaya@email.com"));
+            LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9 + i, 0);
+            entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1)));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = exportService.exportAppointments(out, false);
+
+        JsonNode json = objectMapper.readTree(out.toByteArray());
+        assertThat(count).isEqualTo(3);
+        assertThat(json.isArray()).isTrue();
+        assertThat(json).hasSize(3);
+        assertThat(json.get(0).get("startsAt").asText()).isEqualTo("09:00 24/04/2023");
+        assertThat(json.get(2).get("patient").get("age").asInt()).isEqualTo(39);
+        assertThat(json.get(1).get("room").get("roomName").asText()).isEqualTo("Dermatology");
+        // Written rows do not stay in the persistence context
+        assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    void should_export_doctors_as_ndjson() throws Exception {
+        entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        entityManager.persist(new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+        entityManager.flush();
+        entityManager.clear();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportDoctors(out, true);
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[0]).get("firstName").asText()).isEqualTo("Perla");
+        assertThat(objectMapper.readTree(lines[1]).get("firstName").asText()).isEqualTo("Miren");
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.IdSequences;
+
+
+// Rows written behind the sequence's back have to be committed, like those of a database that predates it
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import(IdSequences.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdSequencesTest {
+
+    @Autowired
+    IdSequences idSequences;
+
+    @Autowired
+    DoctorRepository repoDoctors;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @AfterEach
+    void deleteRows(){
+        repoDoctors.deleteAllInBatch();
+    }
+
+    @Test
+    void should_hand_out_ids_above_existing_rows_once_seeded(){
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> entityManager
+                .createNativeQuery("insert into doctors (id, age, email, first_name, last_name) values (5000, 24, 'p.amalia@hospital.accwe', 'Perla', 'Amalia')")
+                .executeUpdate());
+
+        idSequences.seed();
+        Doctor doctor = repoDoctors.save(new Doctor("Carina", "Zaray", 49, "c.zaray@hospital.accwe"));
+        assertThat(doctor.getId()).isGreaterThan(5000);
+
+        // Already ahead, so a second start leaves it where it is
+        idSequences.seed();
+        Doctor next = repoDoctors.save(new Doctor("Reyna", "Cayetana", 28, "r.cayetana@hospital.accwe"));
+        assertThat(next.getId()).isGreaterThan(doctor.getId());
+        assertThat(repoDoctors.count()).isEqualTo(3);
+    }
+}
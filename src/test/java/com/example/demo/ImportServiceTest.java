@@ -0,0 +1,86 @@
+package com.example.demo;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.Doctor;
+import com.example.demo.dto.ImportReport;
+import com.example.demo.services.ImportService;
+
+
+@DataJpaTest(properties = {"imports.chunk-size=2", "imports.batch-size=2"})
+@AutoConfigureJson
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({ImportService.class, JacksonConfiguration.class})
+class ImportServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    ImportService importService;
+
+    @Autowired
+    PatientRepository repoPatients;
+
+    @Autowired
+    DoctorRepository repoDoctors;
+
+    private static ByteArrayInputStream upload(String body){
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void should_import_valid_csv_rows_and_report_the_others() throws Exception {
+        ImportReport report = importService.importPatients(upload(
+                "firstName,lastName,age,email\n" +
+                "Jose Luis,Olaya,37,j.olaya@email.com\n" +
+                "Paulino,Antunez,abc,p.antunez@email.com\n" +
+                "\"Miren, Jr\",Iniesta,24,m.iniesta@email.com\n" +
+                ",Nadie,30,nadie@email.com\n" +
+                "Perla,Amalia,24,p.amalia@email.com\n"), true);
+
+        assertThat(report.getImported()).isEqualTo(3);
+        assertThat(report.getRejected()).isEqualTo(2);
+        assertThat(report.getRejections()).extracting(ImportReport.Rejection::getRow).containsExactly(2L, 4L);
+        assertThat(report.getRejections().get(1).getReason()).isEqualTo("missing name");
+        assertThat(repoPatients.findAll()).extracting("firstName").containsExactlyInAnyOrder("Jose Luis", "Miren, Jr", "Perla");
+    }
+
+    @Test
+    void should_import_ndjson_in_chunks_with_a_clear_persistence_context() throws Exception {
+        Statistics statistics = entityManager.getEntityManager().unwrap(Session.class).getSessionFactory().getStatistics();
+        statistics.clear();
+        Doctor existing = entityManager.persist(new Doctor("Miren", "Iniesta", 52, "m.iniesta@hospital.accwe"));
+
+        ImportReport report = importService.importDoctors(upload(
+                "{\"firstName\":\"Perla\",\"lastName\":\"Amalia\",\"age\":24,\"email\":\"p.amalia@hospital.accwe\"}\n" +
+                "{\"firstName\":\"Miren\",\"lastName\":\"Iniesta\",\"age\":24,\"email\":\"m.iniesta@hospital.accwe\"}\n" +
+                "\n" +
+                "{\"firstName\":\"Broken\"\n" +
+                "{\"firstName\":\"Jose\",\"lastName\":\"Olaya\",\"age\":200,\"email\":\"j.olaya@hospital.accwe\"}\n" +
+                "{\"firstName\":\"Paulino\",\"lastName\":\"Antunez\",\"age\":37,\"email\":\"p.antunez@hospital.accwe\"}\n"), false);
+
+        assertThat(report.getImported()).isEqualTo(3);
+        assertThat(report.getRejections()).extracting(ImportReport.Rejection::getRow).containsExactly(4L, 5L);
+        assertThat(report.getRejections().get(1).getReason()).isEqualTo("invalid age");
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(4);
+        assertThat(entityManager.getEntityManager().contains(existing)).isFalse();
+        assertThat(repoDoctors.count()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@AutoConfigureMetrics
+class MetricsEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void should_expose_latency_histograms_and_pool_gauges_for_prometheus(){
+        restTemplate.getForEntity("/api/doctors", String.class);
+        restTemplate.getForEntity("/api/rooms/Dermatology", String.class);
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody())
+            .contains("http_server_requests_seconds_bucket{exception=\"None\",method=\"GET\",outcome=\"SUCCESS\",status=\"204\",uri=\"/api/doctors\"")
+            .containsPattern("spring_data_repository_invocations_seconds_bucket\\{[^}]*method=\"findAll\",repository=\"DoctorRepository\"")
+            .containsPattern("spring_data_repository_invocations_seconds_bucket\\{[^}]*method=\"findByRoomName\",repository=\"RoomRepository\"")
+            .contains("appointments_conflict_check_seconds_bucket{detection=\"index\"")
+            .contains("appointments_conflict_rows_scanned_total{detection=\"index\"")
+            .contains("hikaricp_connections_active");
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.example.demo.entities.Doctor;
+import com.example.demo.repositories.DoctorRepository;
+
+// Two H2 databases standing in for the MySQL primary and replica
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:primary", "replica.datasource.url=jdbc:h2:mem:replica"})
+@AutoConfigureMockMvc
+class ReadReplicaConfigurationTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    DoctorRepository repoDoctors;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    // A replica that never catches up: the schema, but none of the primary's rows
+    @BeforeEach
+    void laggingReplica(){
+        new JdbcTemplate(replicaDataSource).execute("create table if not exists doctors (id bigint primary key, age int not null,"
+                + " email varchar(255), first_name varchar(255), last_name varchar(255))");
+    }
+
+    private String database(boolean readOnly){
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template.execute(status -> new JdbcTemplate(dataSource).queryForObject("select database()", String.class));
+    }
+
+    @Test
+    void should_run_read_only_jpa_transactions_on_the_replica_only_when_asked(){
+        try (ReplicaRoutingDataSource.Scope scope = ReplicaRoutingDataSource.replicaReads()){
+            assertThat(database(true)).isEqualTo("REPLICA");
+            assertThat(database(false)).isEqualTo("PRIMARY");
+        }
+        assertThat(database(true)).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    void should_write_to_the_primary(){
+        Doctor doctor = repoDoctors.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+
+        Integer rows = new JdbcTemplate(dataSource).queryForObject("select count(*) from doctors where id = ?", Integer.class, doctor.getId());
+        assertThat(rows).isEqualTo(1);
+        assertThat(repoDoctors.deleteRowById(doctor.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void should_serve_lists_from_the_replica_without_caching_or_tagging_them() throws Exception {
+        String created = mockMvc.perform(post("/api/doctor").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readValue(created, Doctor.class).getId();
+
+        // The replica still has the doctor as it was before a change, and nothing is cached yet
+        new JdbcTemplate(replicaDataSource).update("insert into doctors (id, age, email, first_name, last_name) values (?, 24, ?, ?, ?)",
+                id, "m.iniesta@hospital.accwe", "Miren", "Stale");
+        entityManagerFactory.getCache().evictAll();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+
+        // Lists, exports and existence checks lag, and a lagging list carries no ETag
+        mockMvc.perform(get("/api/doctors"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].lastName").value("Stale"))
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        mockMvc.perform(get("/api/doctors").param("limit", "10"))
+                .andExpect(jsonPath("$[0].lastName").value("Stale"));
+        mockMvc.perform(get("/api/doctors/export")).andExpect(jsonPath("$[0].lastName").value("Stale"));
+        mockMvc.perform(head("/api/doctors/{id}", id + 1)).andExpect(status().isNotFound());
+
+        // What the replica returned went into no cache: a lookup reads the primary, and may be tagged
+        mockMvc.perform(get("/api/doctors/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName").value("Iniesta"))
+                .andExpect(header().exists(HttpHeaders.ETAG));
+
+        mockMvc.perform(delete("/api/doctors/{id}", id)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/doctors/{id}", id)).andExpect(status().isNotFound());
+        new JdbcTemplate(replicaDataSource).update("delete from doctors where id = ?", id);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.controllers.CacheController;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+
+@DataJpaTest(properties = {"spring.cache.cache-names=doctors,patients,rooms", "spring.cache.caffeine.spec=maximumSize=100,recordStats"})
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({CachingConfiguration.class, CacheController.class})
+class ReferenceCacheTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    DoctorRepository repoDoctors;
+
+    @Autowired
+    RoomRepository repoRooms;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    CacheController cacheController;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void clearCaches(){
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void should_read_a_doctor_once_until_it_is_deleted(){
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        assertThat(repoDoctors.findById(doctor.getId())).isPresent();
+        entityManager.clear();
+        assertThat(repoDoctors.findById(doctor.getId())).isPresent();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        assertThat(repoDoctors.deleteRowById(doctor.getId())).isEqualTo(1);
+        assertThat(repoDoctors.findById(doctor.getId())).isEmpty();
+
+        assertThat(cacheController.getCacheStats().getBody().get("doctors"))
+                .containsEntry("hits", 1L).containsEntry("misses", 2L).containsEntry("size", 0L);
+    }
+
+    @Test
+    void should_not_remember_a_missing_room(){
+        assertThat(repoRooms.findByRoomName("Dermatology")).isEmpty();
+
+        entityManager.persist(new Room("Dermatology"));
+        entityManager.flush();
+
+        assertThat(repoRooms.findByRoomName("Dermatology")).isPresent();
+    }
+
+    @Test
+    void should_cache_a_saved_room(){
+        repoRooms.save(new Room("Oncology"));
+        entityManager.flush();
+
+        statistics.clear();
+        assertThat(repoRooms.findByRoomName("Oncology")).isPresent();
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+}
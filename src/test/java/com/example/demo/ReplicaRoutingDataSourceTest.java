@@ -0,0 +1,69 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final String WHICH = "select database()";
+
+    private static DataSource h2(String name){
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+
+    // Name of the database a transaction of the given kind runs on
+    private static String database(DataSource dataSource, boolean readOnly){
+        TransactionTemplate template = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        template.setReadOnly(readOnly);
+        return template.execute(status -> new JdbcTemplate(dataSource).queryForObject(WHICH, String.class));
+    }
+
+    @Test
+    void should_send_read_only_transactions_to_the_replica(){
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(h2("routed_primary"), h2("routed_replica"), Duration.ofSeconds(30));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        try (ReplicaRoutingDataSource.Scope scope = ReplicaRoutingDataSource.replicaReads()){
+            assertThat(database(dataSource, true)).isEqualTo("ROUTED_REPLICA");
+            assertThat(database(dataSource, false)).isEqualTo("ROUTED_PRIMARY");
+            // Outside a transaction is not known to be a read
+            assertThat(new JdbcTemplate(dataSource).queryForObject(WHICH, String.class)).isEqualTo("ROUTED_PRIMARY");
+        }
+    }
+
+    @Test
+    void should_keep_reads_that_did_not_ask_for_the_replica_on_the_primary(){
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(h2("routed_primary"), h2("routed_replica"), Duration.ofSeconds(30));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        assertThat(database(dataSource, true)).isEqualTo("ROUTED_PRIMARY");
+    }
+
+    @Test
+    void should_read_from_the_primary_while_the_replica_is_down(){
+        JdbcDataSource missing = new JdbcDataSource();
+        missing.setURL("jdbc:h2:mem:routed_missing;IFEXISTS=TRUE");
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(h2("routed_primary"), missing, Duration.ofSeconds(30));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        try (ReplicaRoutingDataSource.Scope scope = ReplicaRoutingDataSource.replicaReads()){
+            assertThat(database(dataSource, true)).isEqualTo("ROUTED_PRIMARY");
+            assertThat(routing.isReplicaUp()).isFalse();
+            assertThat(database(dataSource, true)).isEqualTo("ROUTED_PRIMARY");
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentIndex;
+import com.example.demo.services.RoomOccupancy;
+
+class RoomOccupancyUnitTest {
+
+    private AppointmentIndex index;
+    private RoomOccupancy occupancy;
+
+    private Patient patient;
+    private Doctor doctor;
+    private Room room;
+
+    private DateTimeFormatter formatter;
+
+    @BeforeEach
+    void setUp(){
+        index = new AppointmentIndex();
+        occupancy = new RoomOccupancy();
+        ReflectionTestUtils.setField(occupancy, "appointmentIndex", index);
+
+        patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        room = new Room("Dermatology");
+
+        formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+    }
+
+    @Test
+    void shouldMarkCellsCoveredByAppointment(){
+        book(1, "09:00 24/04/2023", "09:30 24/04/2023");
+
+        LocalDate day = LocalDate.of(2023, 4, 24);
+        long[] bits = occupancy.grid("Dermatology", day, 1).get(day);
+
+        // 09:00 is cell 108; six 5-minute cells up to 09:30
+        for (int cell = 0; cell < RoomOccupancy.CELLS_PER_DAY; cell++){
+            assertThat(RoomOccupancy.isBusy(bits, cell)).as("cell %d", cell).isEqualTo(cell >= 108 && cell < 114);
+        }
+        assertThat(occupancy.isFree("Dermatology", day, 100, 108)).isTrue();
+        assertThat(occupancy.isFree("Dermatology", day, 113, 120)).isFalse();
+        assertThat(occupancy.isFree("Oncology", day, 108, 114)).isTrue();
+    }
+
+    @Test
+    void shouldMarkPartialCellsAsBusy(){
+        book(1, "09:02 24/04/2023", "09:06 24/04/2023");
+
+        assertThat(occupancy.isFree("Dermatology", time("09:00 24/04/2023"), time("09:05 24/04/2023"))).isFalse();
+        assertThat(occupancy.isFree("Dermatology", time("09:05 24/04/2023"), time("09:10 24/04/2023"))).isFalse();
+        assertThat(occupancy.isFree("Dermatology", time("09:10 24/04/2023"), time("09:15 24/04/2023"))).isTrue();
+    }
+
+    @Test
+    void shouldSplitAppointmentAcrossMidnight(){
+        book(1, "23:30 24/04/2023", "00:30 25/04/2023");
+
+        assertThat(occupancy.isFree("Dermatology", LocalDate.of(2023, 4, 24), 282, 288)).isFalse();
+        assertThat(occupancy.isFree("Dermatology", LocalDate.of(2023, 4, 25), 0, 6)).isFalse();
+        assertThat(occupancy.isFree("Dermatology", LocalDate.of(2023, 4, 25), 6, 288)).isTrue();
+    }
+
+    @Test
+    void shouldKeepCellsOfRemainingAppointmentsOnRemoval(){
+        Appointment first = book(1, "09:00 24/04/2023", "09:32 24/04/2023");
+        book(2, "09:33 24/04/2023", "10:00 24/04/2023");
+
+        index.remove(first);
+        occupancy.remove(first);
+
+        assertThat(occupancy.isFree("Dermatology", time("09:00 24/04/2023"), time("09:30 24/04/2023"))).isTrue();
+        // Shared cell 09:30-09:35 is still taken by the second appointment
+        assertThat(occupancy.isFree("Dermatology", time("09:30 24/04/2023"), time("09:35 24/04/2023"))).isFalse();
+        assertThat(occupancy.isFree("Dermatology", time("09:35 24/04/2023"), time("10:00 24/04/2023"))).isFalse();
+    }
+
+    @Test
+    void shouldLoadFromIndex(){
+        Appointment appointment = new Appointment(patient, doctor, room, time("09:00 24/04/2023"), time("10:00 24/04/2023"));
+        appointment.setId(1);
+        index.add(appointment);
+
+        occupancy.load();
+
+        assertThat(occupancy.isFree("Dermatology", time("09:30 24/04/2023"), time("09:35 24/04/2023"))).isFalse();
+    }
+
+    private Appointment book(long id, String startsAt, String finishesAt){
+        Appointment appointment = new Appointment(patient, doctor, room, time(startsAt), time(finishesAt));
+        appointment.setId(id);
+        index.add(appointment);
+        occupancy.add(appointment);
+        return appointment;
+    }
+
+    private LocalDateTime time(String value){
+        return LocalDateTime.parse(value, formatter);
+    }
+}
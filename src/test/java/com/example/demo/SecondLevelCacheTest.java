@@ -0,0 +1,138 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+
+// Only committed rows are cached, so every step runs in a transaction of its own and the rows are deleted afterwards
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    AppointmentRepository repoAppointments;
+
+    @Autowired
+    DoctorRepository repoDoctors;
+
+    @Autowired
+    PatientRepository repoPatients;
+
+    @Autowired
+    RoomRepository repoRooms;
+
+    private SessionFactory sessionFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void evictCaches(){
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+    }
+
+    @AfterEach
+    void deleteRows(){
+        repoAppointments.deleteAllInBatch();
+        repoDoctors.deleteAllInBatch();
+        repoPatients.deleteAllInBatch();
+        repoRooms.deleteAllInBatch();
+    }
+
+    @Test
+    void should_list_appointments_without_selecting_cached_people_and_rooms(){
+        LocalDateTime morning = LocalDateTime.of(2023, 4, 24, 9, 0);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < 3; i++){
+            Patient patient = new Patient("Jose Luis", "Olaya", 37 + i, "j.olaya@email.com");
+            Doctor doctor = new Doctor("Carina", "Zaray", 49 + i, "c.zaray@hospital.accwe");
+            entityManager.persist(new Appointment(patient, doctor, new Room("Room " + i), morning.plusHours(i), morning.plusHours(i + 1)));
+        }
+        entityManager.getTransaction().commit();
+        entityManager.close();
+        sessionFactory.getCache().evictAllRegions();
+
+        // Without a fetch join every patient, doctor and room is a select of its own the first time...
+        statistics.clear();
+        assertThat(listAppointments()).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(10);
+        assertThat(statistics.getSecondLevelCachePutCount()).isEqualTo(9);
+
+        // ...and none once they are cached
+        statistics.clear();
+        assertThat(listAppointments()).hasSize(3).allMatch(a -> a.getDoctor().getAge() >= 49);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(9);
+
+        // The repository listing joins them in, so it is one statement either way
+        statistics.clear();
+        assertThat(repoAppointments.findAll()).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_find_a_cached_doctor_after_it_is_deleted(){
+        Doctor doctor = repoDoctors.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        assertThat(sessionFactory.getCache().containsEntity(Doctor.class, doctor.getId())).isTrue();
+
+        assertThat(repoDoctors.deleteRowById(doctor.getId())).isEqualTo(1);
+
+        assertThat(sessionFactory.getCache().containsEntity(Doctor.class, doctor.getId())).isFalse();
+        assertThat(repoDoctors.findById(doctor.getId())).isNotPresent();
+    }
+
+    @Test
+    void should_answer_room_by_name_from_the_query_cache_until_rooms_change(){
+        repoRooms.save(new Room("Query room"));
+
+        statistics.clear();
+        assertThat(repoRooms.findByRoomName("Query room")).isPresent();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThat(repoRooms.findByRoomName("Query room")).isPresent();
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+
+        assertThat(repoRooms.deleteRowByRoomName("Query room")).isEqualTo(1);
+
+        assertThat(repoRooms.findByRoomName("Query room")).isNotPresent();
+    }
+
+    private List<Appointment> listAppointments(){
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select a from Appointment a", Appointment.class).getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+}